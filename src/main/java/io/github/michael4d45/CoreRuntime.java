@@ -1,22 +1,16 @@
 package io.github.michael4d45;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
 
 public class CoreRuntime {
 
-  TxRuntime ingress = new TxRuntime();
-  RxRuntime egress = new RxRuntime();
-  Queue<Frame> rxQueue = new LinkedList<>(); // frames waiting for egress
-
-  // Capacity for RX queue (frames pending emission). Status frames, routed frames, IPv4 frames
-  // all share this. Drops increment overflow counter / bit.
+  final TxFramerStateMachine.Framer ingress = new TxFramerStateMachine.Framer();
+  final RxEmitterStateMachine.Emitter egress = new RxEmitterStateMachine.Emitter();
+  // Frames waiting for egress. Data frames get cores.rxQueueCapacity slots; control frames have
+  // their own small lane that is emitted first. Drops increment overflow counter / bit.
   // When full, local senders receive BLOCK_BUSY (Data Control 0x3).
   // IPv4 senders receive TARGET_BUSY (IPv4 Control 0xC).
-  private static final int RX_QUEUE_CAPACITY = 64;
+  final RxQueue rxQueue = new RxQueue(NetworkCoreConfig.rxQueueCapacity());
 
   // Telemetry counters (server-thread only, no sync needed)
   long txFramesParsed = 0; // successfully parsed ingress frames (data/control/ipv4)
@@ -24,66 +18,110 @@ public class CoreRuntime {
   long rxFramesEmitted = 0; // frames fully emitted on egress
   long rxOverflowDrops = 0; // frames dropped because RX queue full
 
+  // Symbol driven onto the receive face by the last processRxOutput call
+  private int lastOutputPower = 0;
+  // Bus mode: second symbol per tick, read by comparators (0 outside bus mode)
+  private int lastBusOutput = 0;
+  // Two symbols per tick instead of one (see NetworkCoreEntity#setBusMode)
+  private boolean busMode = false;
+
+  // Handle into the world's NetworkCoreScheduler; slot is -1 while the core is not loaded
+  NetworkCoreScheduler scheduler;
+  int slot = -1;
+
+  // Label FrameTrace logs this core's events under; null while tracing is off
+  private String traceTag;
+
   // Cached last computed error flags bitfield:
   // bit0=RX_OVERFLOW, bit1=TX_FRAMING_ERR, bit2=PORT_ALLOC_FAILURE, bit3=IPV4_ROUTING_FAILURE
   private int errorFlagsBitfield = 0;
 
   public void processTxSymbol(NetworkCoreEntity be, int transmitPower) {
-    TxFramerStateMachine.State prevState = ingress.state;
-    TxFramerStateMachine.Result result =
-        TxFramerStateMachine.process(
-            prevState, ingress.buffer, ingress.expectedLength, transmitPower);
-    ingress.state = result.state;
-    ingress.buffer = result.buffer; // buffer is a new list copy from process
-    ingress.expectedLength = result.expectedLength;
-    if (transmitPower != 0) {
-      NetworkCore.LOGGER.debug(
-          "INGRESS transmitPower={} bufSize={}", transmitPower, ingress.buffer.size());
-    }
-    if (ingress.state != prevState) {
-      NetworkCore.LOGGER.debug(
-          "INGRESS prevState={} newState={} bufSize={} expected={} committed={}",
-          prevState,
-          result.state,
-          ingress.buffer.size(),
-          ingress.expectedLength,
-          result.committedFrame != null);
+    // Also fed outside the tick (sendtest command), which must keep the core running
+    wake();
+    dispatch(be, advanceTx(transmitPower, 0));
+  }
+
+  /**
+   * Feeds this tick's symbols into the framer: {@code transmitPower}, then in bus mode {@code
+   * busSymbol}. Touches only this runtime, so different cores may call it concurrently; the
+   * committed frame is routed separately by {@link #dispatch}.
+   *
+   * @return the frame these symbols completed, or {@code null}
+   */
+  Frame advanceTx(int transmitPower, int busSymbol) {
+    Frame committedFrame = advanceTx(transmitPower);
+    if (!busMode) {
+      return committedFrame;
     }
-    if (result.committedFrame != null) {
-      NetworkCore.LOGGER.info("Committed frame: {}", result.committedFrame);
-      // framing error count removed for now; could add metrics collection later
-      switch (result.committedFrame) {
-        case IPv4Frame ipv4Frame -> IPv4Router.sendFrame(ipv4Frame);
-        case DataFrame dataFrame -> DataRouter.sendLocalDataFrame(be, dataFrame);
-        case DataControlFrame controlFrame -> processDataControlFrame(controlFrame, be);
-        default ->
-            NetworkCore.LOGGER.debug(
-                "Unhandled frame type emitted from TX parser: {}",
-                result.committedFrame.getClass().getSimpleName());
+    // A frame is at least six symbols, so the two halves of a tick never both complete one
+    Frame busFrame = advanceTx(busSymbol);
+    return committedFrame != null ? committedFrame : busFrame;
+  }
+
+  private Frame advanceTx(int transmitPower) {
+    TxFramerStateMachine.State prevState = ingress.getState();
+    Frame committedFrame = ingress.advance(transmitPower);
+    // Checked first: the arguments would be boxed on every symbol of every core
+    if (NetworkCore.LOGGER.isDebugEnabled()) {
+      if (transmitPower != 0) {
+        NetworkCore.LOGGER.debug(
+            "INGRESS transmitPower={} bufSize={}", transmitPower, ingress.size());
+      }
+      if (ingress.getState() != prevState) {
+        NetworkCore.LOGGER.debug(
+            "INGRESS prevState={} newState={} bufSize={} expected={} committed={}",
+            prevState,
+            ingress.getState(),
+            ingress.size(),
+            ingress.getExpectedLength(),
+            committedFrame != null);
       }
-      txFramesParsed++;
     }
-    if (result.errorIncremented) {
+    if (ingress.errorIncremented()) {
       txFramingErrors++;
       // Keep error flags up-to-date when framing errors occur so STATUS_REPLY reflects them
       recomputeErrorFlags();
     }
+    return committedFrame;
+  }
+
+  /** Routes a frame committed by {@link #advanceTx}. Server thread only. */
+  void dispatch(NetworkCoreEntity be, Frame committedFrame) {
+    if (committedFrame == null) {
+      return;
+    }
+    if (FrameTrace.wants(traceTag)) {
+      FrameTrace.frame(FrameTrace.Event.COMMITTED, traceTag, committedFrame);
+    }
+    // framing error count removed for now; could add metrics collection later
+    switch (committedFrame) {
+      case IPv4Frame ipv4Frame -> IPv4Router.sendFrame(ipv4Frame);
+      case DataFrame dataFrame -> DataRouter.sendLocalDataFrame(be, dataFrame);
+      case DataControlFrame controlFrame -> processDataControlFrame(controlFrame, be);
+      default ->
+          NetworkCore.LOGGER.debug(
+              "Unhandled frame type emitted from TX parser: {}",
+              committedFrame.getClass().getSimpleName());
+    }
+    txFramesParsed++;
   }
 
   private void processDataControlFrame(DataControlFrame controlFrame, NetworkCoreEntity be) {
-    NetworkCore.LOGGER.info("Processing data control frame: {}", controlFrame);
+    NetworkCore.LOGGER.debug("Processing data control frame: {}", controlFrame);
     int code = controlFrame.getCode();
-    int[] args = controlFrame.getArgs();
+    PackedNibbles args = controlFrame.getArgNibbles();
     switch (code) {
       case 0x0 -> {
-        if (args.length != 0) {
-          NetworkCore.LOGGER.warn("NOP control frame should have no args (got {})", args.length);
+        if (args.length() != 0) {
+          NetworkCore.LOGGER.warn(
+              "NOP control frame should have no args (got {})", args.length());
         }
         break;
       }
       case 0x1 -> {
-        if (args.length == 4) {
-          int port = (args[0] << 12) | (args[1] << 8) | (args[2] << 4) | args[3];
+        if (args.length() == 4) {
+          int port = decodePort(args);
           NetworkCore.LOGGER.warn("Port {} unreachable", port);
         } else {
           NetworkCore.LOGGER.warn("PORT_UNREACHABLE frame requires 4 arg nibbles");
@@ -91,14 +129,13 @@ public class CoreRuntime {
         break;
       }
       case 0x2 -> {
-        NetworkCore.LOGGER.warn(
-            "MALFORMED_FRAME notification received (args={}). Dropped.", Arrays.toString(args));
+        NetworkCore.LOGGER.warn("MALFORMED_FRAME notification received (args={}). Dropped.", args);
         break;
       }
       case 0x3 -> {
-        if (args.length == 4) {
-          int port = (args[0] << 12) | (args[1] << 8) | (args[2] << 4) | args[3];
-          NetworkCore.LOGGER.info("Target port {} busy", port);
+        if (args.length() == 4) {
+          int port = decodePort(args);
+          NetworkCore.LOGGER.debug("Target port {} busy", port);
         } else {
           NetworkCore.LOGGER.warn("BLOCK_BUSY frame requires 4 arg nibbles");
         }
@@ -110,11 +147,11 @@ public class CoreRuntime {
         break;
       }
       case 0x5 -> {
-        NetworkCore.LOGGER.info("Received ECHO_REPLY payload={} ", Arrays.toString(args));
+        NetworkCore.LOGGER.debug("Received ECHO_REPLY payload={} ", args);
         break;
       }
       case 0x6 -> {
-        if (args.length != 0) {
+        if (args.length() != 0) {
           NetworkCore.LOGGER.warn("MODEQ control frame should have no args");
         }
         int port = be.getPort();
@@ -122,52 +159,53 @@ public class CoreRuntime {
         break;
       }
       case 0x7 -> {
-        if (args.length != 0) {
+        if (args.length() != 0) {
           NetworkCore.LOGGER.warn("RESET control frame should have no args");
         }
         performReset();
         break;
       }
       case 0x8 -> {
-        if (args.length != 4) {
+        if (args.length() != 4) {
           NetworkCore.LOGGER.warn(
-              "SETPORT control frame requires 4 arg nibbles (got {})", args.length);
+              "SETPORT control frame requires 4 arg nibbles (got {})", args.length());
           break;
         }
-        int requestedPort = (args[0] << 12) | (args[1] << 8) | (args[2] << 4) | (args[3] & 0xF);
+        int requestedPort = decodePort(args);
         if (requestedPort < 0 || requestedPort > 65535) {
           NetworkCore.LOGGER.warn("SETPORT request out of range: {}", requestedPort);
           break;
         }
-        NetworkCore.LOGGER.info("SETPORT request to {}", requestedPort);
+        NetworkCore.LOGGER.debug("SETPORT request to {}", requestedPort);
         be.setPort(requestedPort);
         queueStatusReply(be.getPort());
         break;
       }
       case 0xA -> {
-        if (args.length == 8) {
+        if (args.length() == 8) {
           byte[] ip = new byte[4];
-          ip[0] = (byte) ((args[0] << 4) | args[1]);
-          ip[1] = (byte) ((args[2] << 4) | args[3]);
-          ip[2] = (byte) ((args[4] << 4) | args[5]);
-          ip[3] = (byte) ((args[6] << 4) | args[7]);
+          ip[0] = (byte) ((args.get(0) << 4) | args.get(1));
+          ip[1] = (byte) ((args.get(2) << 4) | args.get(3));
+          ip[2] = (byte) ((args.get(4) << 4) | args.get(5));
+          ip[3] = (byte) ((args.get(6) << 4) | args.get(7));
           NetworkCore.LOGGER.warn("Host unreachable: {}", Arrays.toString(ip));
         } else {
           NetworkCore.LOGGER.warn(
-              "HOST_UNREACHABLE frame requires 8 arg nibbles (got {})", args.length);
+              "HOST_UNREACHABLE frame requires 8 arg nibbles (got {})", args.length());
         }
         break;
       }
       case 0xB -> {
-        NetworkCore.LOGGER.warn("Network error received (args={})", Arrays.toString(args));
+        NetworkCore.LOGGER.warn("Network error received (args={})", args);
         break;
       }
       case 0xC -> {
-        if (args.length == 4) {
-          int port = (args[0] << 12) | (args[1] << 8) | (args[2] << 4) | args[3];
-          NetworkCore.LOGGER.info("Remote target port {} busy", port);
+        if (args.length() == 4) {
+          int port = decodePort(args);
+          NetworkCore.LOGGER.debug("Remote target port {} busy", port);
         } else {
-          NetworkCore.LOGGER.warn("TARGET_BUSY frame requires 4 arg nibbles (got {})", args.length);
+          NetworkCore.LOGGER.warn(
+              "TARGET_BUSY frame requires 4 arg nibbles (got {})", args.length());
         }
         break;
       }
@@ -175,63 +213,114 @@ public class CoreRuntime {
     }
   }
 
+  private static int decodePort(PackedNibbles args) {
+    return (args.get(0) << 12) | (args.get(1) << 8) | (args.get(2) << 4) | args.get(3);
+  }
+
   private void performReset() {
-    ingress.state = TxFramerStateMachine.State.IDLE;
-    ingress.buffer.clear();
-    ingress.expectedLength = 0;
-    egress.state = RxEmitterStateMachine.State.IDLE;
-    egress.currentFrame = null;
-    egress.symbols = null;
-    egress.position = 0;
-    egress.lastOutputPower = 0;
+    ingress.reset();
+    egress.reset();
+    lastOutputPower = 0;
+    lastBusOutput = 0;
     rxQueue.clear();
     recomputeErrorFlags();
-    NetworkCore.LOGGER.info("Core runtime reset");
+    NetworkCore.LOGGER.debug("Core runtime reset");
   }
 
+  /** Picks this tick's output: one symbol, or two in bus mode. */
   public void processRxOutput() {
-    RxEmitterStateMachine.State previousState = egress.state;
-    Frame previousFrame = egress.currentFrame;
-    RxEmitterStateMachine.Result result =
-        RxEmitterStateMachine.process(
-            egress.state, egress.currentFrame, egress.symbols, egress.position, rxQueue);
-    if (egress.state != result.newState || egress.state == RxEmitterStateMachine.State.OUTPUTTING) {
-      NetworkCore.LOGGER.debug(
-          "currentFrame={} symbols={} position={}",
-          egress.currentFrame,
-          egress.symbols,
-          egress.position);
+    lastOutputPower = emitSymbol();
+    lastBusOutput = busMode ? emitSymbol() : 0;
+  }
 
+  private int emitSymbol() {
+    RxEmitterStateMachine.State previousState = egress.getState();
+    Frame previousFrame = egress.getCurrentFrame();
+    int outputSymbol = egress.advance(rxQueue);
+    RxEmitterStateMachine.State newState = egress.getState();
+    if (NetworkCore.LOGGER.isDebugEnabled()
+        && (previousState != newState || newState == RxEmitterStateMachine.State.OUTPUTTING)) {
       NetworkCore.LOGGER.debug(
-          "EGRESS prevState={} newState={} frameNull={} symbolsNull={} posIdx={} outSym={}",
-          egress.state,
-          result.newState,
-          result.currentFrame == null,
-          result.symbols == null,
-          result.position,
-          result.outputSymbol);
-    }
-    egress.state = result.newState;
-    egress.currentFrame = result.currentFrame;
-    egress.symbols = result.symbols;
-    egress.position = result.position;
-    Integer outputSymbol = result.outputSymbol;
-    if (outputSymbol != null) {
-      egress.lastOutputPower = outputSymbol;
-    } else {
-      egress.lastOutputPower = 0;
+          "EGRESS prevState={} newState={} frameNull={} symbols={} posIdx={} outSym={}",
+          previousState,
+          newState,
+          egress.getCurrentFrame() == null,
+          egress.getSymbolCount(),
+          egress.getPosition(),
+          outputSymbol);
     }
     // Count frame emission when we transition from OUTPUTTING to IDLE having previously had a
     // frame.
     if (previousState == RxEmitterStateMachine.State.OUTPUTTING
-        && result.newState == RxEmitterStateMachine.State.IDLE
+        && newState == RxEmitterStateMachine.State.IDLE
         && previousFrame != null) {
       rxFramesEmitted++;
+      if (FrameTrace.wants(traceTag)) {
+        FrameTrace.frame(FrameTrace.Event.EMITTED, traceTag, previousFrame);
+      }
     }
+    return outputSymbol;
   }
 
   public int getLastOutputPower() {
-    return egress.lastOutputPower;
+    return lastOutputPower;
+  }
+
+  /** Second symbol of the last tick in bus mode, 0 otherwise. */
+  public int getLastBusOutput() {
+    return lastBusOutput;
+  }
+
+  public boolean isBusMode() {
+    return busMode;
+  }
+
+  void setBusMode(boolean busMode) {
+    this.busMode = busMode;
+    if (!busMode) {
+      lastBusOutput = 0;
+    }
+    wake();
+  }
+
+  /**
+   * Logs this core's frame events under {@code tag} (see {@link FrameTrace}), or stops if {@code
+   * tag} is null.
+   */
+  public void setTraceTag(String tag) {
+    traceTag = tag;
+  }
+
+  public boolean isTraced() {
+    return traceTag != null;
+  }
+
+  /** Resumes ticking a sleeping core (see {@link NetworkCoreScheduler}). */
+  public void wake() {
+    if (scheduler != null) {
+      scheduler.wake(slot);
+    }
+  }
+
+  /**
+   * Asks the scheduler to re-sample this core's inputs at the end of the world tick and wakes it.
+   * Returns false if the core is not scheduled, in which case the caller samples them itself.
+   */
+  boolean markInputsDirty() {
+    if (scheduler == null) {
+      return false;
+    }
+    scheduler.markInputsDirty(slot);
+    return true;
+  }
+
+  /** Whether another clocked tick with transmit power 0 would change nothing. */
+  boolean isIdle() {
+    return ingress.getState() == TxFramerStateMachine.State.IDLE
+        && egress.getState() == RxEmitterStateMachine.State.IDLE
+        && rxQueue.isEmpty()
+        && lastOutputPower == 0
+        && lastBusOutput == 0;
   }
 
   public boolean sendFrame(Frame frame) {
@@ -240,12 +329,13 @@ public class CoreRuntime {
     }
     // Validate frame can be built before queuing - all frames limited to 255 total args
     try {
-      int[] args = frame.getPayloadArgs();
-      if (args.length > 255) {
+      PackedNibbles args = frame.getPayloadArgs();
+      if (args.length() > 255) {
         NetworkCore.LOGGER.error(
-            "Cannot queue frame with args length {} (max 255): {}", args.length, frame);
+            "Cannot queue frame with args length {} (max 255): {}", args.length(), frame);
         rxOverflowDrops++;
         recomputeErrorFlags();
+        traceDropped(frame);
         return false;
       }
     } catch (IllegalStateException e) {
@@ -254,19 +344,28 @@ public class CoreRuntime {
       recomputeErrorFlags();
       return false;
     }
-    if (rxQueue.size() >= RX_QUEUE_CAPACITY) {
+    if (!rxQueue.offer(frame)) {
       rxOverflowDrops++;
       recomputeErrorFlags();
-      NetworkCore.LOGGER.warn("RX queue full ({}), dropping frame {}", RX_QUEUE_CAPACITY, frame);
+      NetworkCore.LOGGER.warn("RX queue full ({}), dropping frame {}", rxQueue.size(), frame);
+      traceDropped(frame);
       return false;
     }
-    rxQueue.add(frame);
-    NetworkCore.LOGGER.debug("Queued frame for egress, queue size now {}", rxQueue.size());
+    wake();
+    if (FrameTrace.wants(traceTag)) {
+      FrameTrace.frame(FrameTrace.Event.QUEUED, traceTag, frame);
+    }
     return true;
   }
 
+  private void traceDropped(Frame frame) {
+    if (FrameTrace.wants(traceTag)) {
+      FrameTrace.frame(FrameTrace.Event.DROPPED, traceTag, frame);
+    }
+  }
+
   private void queueStatusReply(int port) {
-    int rxDepth = Math.min(rxQueue.size(), RX_QUEUE_CAPACITY);
+    int rxDepth = Math.min(rxQueue.size(), 0xFF);
     recomputeErrorFlags();
     // Build STATUS_REPLY payload: signature + 4 port nibbles + 2 rxDepth nibbles + errorFlags + 8
     // IP nibbles + 4 UDP port nibbles
@@ -299,14 +398,13 @@ public class CoreRuntime {
     payload[18] = (udpPort >> 4) & 0xF;
     payload[19] = udpPort & 0xF;
     DataControlFrame statusReply = new DataControlFrame(0x9, payload); // CODE 0x9 = STATUS_REPLY
-    if (rxQueue.size() >= RX_QUEUE_CAPACITY) {
+    if (!rxQueue.offer(statusReply)) {
       rxOverflowDrops++;
       recomputeErrorFlags();
       NetworkCore.LOGGER.warn("RX queue full, cannot queue status reply");
       return;
     }
-    rxQueue.add(statusReply);
-    NetworkCore.LOGGER.info("Queued STATUS_REPLY for RX (port={})", port);
+    NetworkCore.LOGGER.debug("Queued STATUS_REPLY for RX (port={})", port);
   }
 
   private void recomputeErrorFlags() {
@@ -343,6 +441,11 @@ public class CoreRuntime {
     return rxQueue.size();
   }
 
+  /** Data frames this core can accept right now (see {@link DataRouter} staging). */
+  public int getRxCredit() {
+    return rxQueue.dataCredit();
+  }
+
   public int getErrorFlagsBitfield() {
     return errorFlagsBitfield;
   }
@@ -354,9 +457,9 @@ public class CoreRuntime {
       byte[] dstIp,
       int dstUdpPort,
       int port) {
-    NetworkCore.LOGGER.info("Processing remote data control frame: {}", frame);
+    NetworkCore.LOGGER.debug("Processing remote data control frame: {}", frame);
     int code = frame.getCode();
-    int[] args = frame.getArgs();
+    PackedNibbles args = frame.getArgNibbles();
     switch (code) {
       case 0x4 -> { // ECHO_REQUEST
         DataControlFrame reply = new DataControlFrame(0x5, args);
@@ -373,7 +476,7 @@ public class CoreRuntime {
   }
 
   private DataControlFrame createStatusReply(int port) {
-    int rxDepth = Math.min(rxQueue.size(), RX_QUEUE_CAPACITY);
+    int rxDepth = Math.min(rxQueue.size(), 0xFF);
     recomputeErrorFlags();
     // Build STATUS_REPLY payload: signature + 4 port nibbles + 2 rxDepth nibbles + errorFlags + 8
     // IP nibbles + 4 UDP port nibbles
@@ -406,20 +509,4 @@ public class CoreRuntime {
     payload[19] = udpPort & 0xF;
     return new DataControlFrame(0x9, payload); // CODE 0x9 = STATUS_REPLY
   }
-
-  private static final class TxRuntime {
-
-    TxFramerStateMachine.State state = TxFramerStateMachine.State.IDLE;
-    List<Integer> buffer = new ArrayList<>();
-    int expectedLength = 0;
-  }
-
-  private static final class RxRuntime {
-
-    RxEmitterStateMachine.State state = RxEmitterStateMachine.State.IDLE;
-    Frame currentFrame;
-    int[] symbols;
-    int position = 0;
-    int lastOutputPower = 0;
-  }
 }
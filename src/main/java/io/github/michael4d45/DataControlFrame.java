@@ -1,20 +1,27 @@
 package io.github.michael4d45;
 
-import java.util.Arrays;
-
 /** Control frame used for intra-world diagnostics and management. */
 public class DataControlFrame extends Frame {
 
   private final int code;
-  private final int[] args;
+  private final PackedNibbles args;
 
   public DataControlFrame(int code, int[] args) {
+    this(code, PackedNibbles.of(args));
+  }
+
+  public DataControlFrame(int code, PackedNibbles args) {
     this.code = code & 0xF;
-    this.args = (args == null) ? new int[0] : Arrays.copyOf(args, args.length);
+    this.args = (args == null) ? PackedNibbles.EMPTY : args;
   }
 
   public int[] getArgs() {
-    return Arrays.copyOf(args, args.length);
+    return args.toIntArray();
+  }
+
+  /** Read-only view of the argument nibbles (no copy). */
+  public PackedNibbles getArgNibbles() {
+    return args;
   }
 
   @Override
@@ -28,16 +35,20 @@ public class DataControlFrame extends Frame {
   }
 
   @Override
-  protected int[] getPayloadArgs() {
-    return Arrays.copyOf(args, args.length);
+  protected PackedNibbles getPayloadArgs() {
+    return args;
   }
 
   @Override
   public String toString() {
-    return String.format("DataControlFrame{code=%d, args=%s}", code, Arrays.toString(args));
+    return String.format("DataControlFrame{code=%d, args=%s}", code, args);
   }
 
   public static DataControlFrame from(int code, int[] args) {
     return new DataControlFrame(code, args);
   }
+
+  public static DataControlFrame from(int code, PackedNibbles args) {
+    return new DataControlFrame(code, args);
+  }
 }
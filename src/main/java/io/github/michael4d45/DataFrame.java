@@ -1,35 +1,53 @@
 package io.github.michael4d45;
 
-import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Data frame transporting payload between ports within the same world. CODE must be 0x0 for all
- * standard Data frames in protocol v1. Non-zero CODE values are reserved for future
+ * standard Data frames in protocol v1. CODE 0x1 marks a run-length coded payload ({@link
+ * NibbleRle}), expanded by {@link #from}; other non-zero CODE values are reserved for future
  * application-layer extensions.
+ *
+ * <p>The payload is always held expanded. With {@code frames.compressData} on, a CODE 0x0 frame is
+ * sent coded whenever that is shorter; a payload too long for one frame is coded regardless, as
+ * that is the only way it can be sent.
  */
 public class DataFrame extends Frame {
 
+  // See TxFramerStateMachine.LOGGER
+  private static final Logger LOGGER = LoggerFactory.getLogger(NetworkCore.MOD_ID);
+
   public static final int DEFAULT_CODE = 0x0;
+  public static final int COMPRESSED_CODE = 0x1;
+  // Payload nibbles that fit in one frame after the two ports
+  private static final int MAX_RAW_PAYLOAD = 0xFF - 8;
 
   private final int code;
   private final int dstPort;
   private final int srcPort;
-  private final int[] payload;
+  private final PackedNibbles payload;
+  // Payload as sent: payload itself, or its coded form; computed on first use
+  private PackedNibbles wirePayload;
 
   public DataFrame(int dstPort, int srcPort, int[] payload) {
     this(DEFAULT_CODE, dstPort, srcPort, payload);
   }
 
   public DataFrame(int code, int dstPort, int srcPort, int[] payload) {
+    this(code, dstPort, srcPort, PackedNibbles.of(payload));
+  }
+
+  public DataFrame(int code, int dstPort, int srcPort, PackedNibbles payload) {
     this.code = code & 0xF;
     if (code != 0x0) {
-      NetworkCore.LOGGER.warn(
+      LOGGER.warn(
           "Data frame created with non-zero CODE=0x{} (reserved for future use)",
           Integer.toHexString(code & 0xF).toUpperCase());
     }
     this.dstPort = clampPort(dstPort);
     this.srcPort = clampPort(srcPort);
-    this.payload = (payload == null) ? new int[0] : Arrays.copyOf(payload, payload.length);
+    this.payload = (payload == null) ? PackedNibbles.EMPTY : payload;
   }
 
   public int getDstPort() {
@@ -41,7 +59,12 @@ public class DataFrame extends Frame {
   }
 
   public int[] getPayload() {
-    return Arrays.copyOf(payload, payload.length);
+    return payload.toIntArray();
+  }
+
+  /** Read-only view of the payload nibbles (no copy). */
+  public PackedNibbles getPayloadNibbles() {
+    return payload;
   }
 
   @Override
@@ -49,54 +72,74 @@ public class DataFrame extends Frame {
     return 0;
   }
 
+  /** CODE as sent: {@link #COMPRESSED_CODE} if the payload goes out coded. */
   @Override
   public int getCode() {
-    return code;
+    return wirePayload() != payload ? COMPRESSED_CODE : code;
   }
 
   @Override
-  protected int[] getPayloadArgs() {
-    int[] args = new int[8 + payload.length];
-    encodePort(args, 0, dstPort);
-    encodePort(args, 4, srcPort);
-    System.arraycopy(payload, 0, args, 8, payload.length);
-    return args;
+  protected PackedNibbles getPayloadArgs() {
+    PackedNibbles sent = wirePayload();
+    return new PackedNibbles.Builder(8 + sent.length())
+        .addPort(dstPort)
+        .addPort(srcPort)
+        .addAll(sent)
+        .build();
+  }
+
+  // Frames are shared across threads; a race only computes the same immutable value twice
+  private PackedNibbles wirePayload() {
+    PackedNibbles sent = wirePayload;
+    if (sent == null) {
+      sent = payload;
+      if (code == DEFAULT_CODE
+          && !payload.isEmpty()
+          && (NibbleRle.isEnabled() || payload.length() > MAX_RAW_PAYLOAD)) {
+        PackedNibbles encoded = NibbleRle.encode(payload);
+        if (encoded.length() < payload.length()) {
+          sent = encoded;
+        }
+      }
+      wirePayload = sent;
+    }
+    return sent;
   }
 
   @Override
   public String toString() {
     return String.format(
         "DataFrame{code=%d, dstPort=%d, srcPort=%d, payload=%s}",
-        code, dstPort, srcPort, Arrays.toString(payload));
+        code, dstPort, srcPort, payload);
   }
 
   public static DataFrame from(int code, int[] args) {
-    if (args.length < 8) {
+    return from(code, PackedNibbles.of(args));
+  }
+
+  public static DataFrame from(int code, PackedNibbles args) {
+    if (args.length() < 8) {
       throw new IllegalArgumentException("Data frame payload must include dst/src port");
     }
+    int dstPort = decodePort(args, 0);
+    int srcPort = decodePort(args, 4);
+    PackedNibbles payload = args.slice(8, args.length());
+    if (code == COMPRESSED_CODE) {
+      return new DataFrame(DEFAULT_CODE, dstPort, srcPort, NibbleRle.decode(payload));
+    }
     if (code != 0x0) {
-      NetworkCore.LOGGER.warn(
+      LOGGER.warn(
           "Data frame parsed with non-zero CODE=0x{} (reserved for future use)",
           Integer.toHexString(code & 0xF).toUpperCase());
     }
-    int dstPort = decodePort(args, 0);
-    int srcPort = decodePort(args, 4);
-    int[] payload = Arrays.copyOfRange(args, 8, args.length);
     return new DataFrame(code, dstPort, srcPort, payload);
   }
 
-  private static void encodePort(int[] target, int offset, int port) {
-    target[offset] = (port >> 12) & 0xF;
-    target[offset + 1] = (port >> 8) & 0xF;
-    target[offset + 2] = (port >> 4) & 0xF;
-    target[offset + 3] = port & 0xF;
-  }
-
-  private static int decodePort(int[] source, int offset) {
-    return (source[offset] << 12)
-        | (source[offset + 1] << 8)
-        | (source[offset + 2] << 4)
-        | source[offset + 3];
+  private static int decodePort(PackedNibbles source, int offset) {
+    return (source.get(offset) << 12)
+        | (source.get(offset + 1) << 8)
+        | (source.get(offset + 2) << 4)
+        | source.get(offset + 3);
   }
 
   private static int clampPort(int port) {
@@ -3,10 +3,17 @@ package io.github.michael4d45;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerBlockEntityEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtIo;
@@ -26,7 +33,21 @@ public final class DataRouter {
   public static MinecraftServer server;
 
   // Global port allocation state
-  private static NetworkCorePortState allocation = new NetworkCorePortState();
+  private static volatile NetworkCorePortState allocation = new NetworkCorePortState();
+
+  // Background writer persisting allocation changes as they happen (null while stopped)
+  private static PortStateJournal journal;
+
+  // Hot-path cache of live block entities by port. Entries are validated on read (removed or
+  // re-ported entities fall back to the allocation lookup), so a stale slot is never trusted.
+  private static final NetworkCoreEntity[] liveByPort = new NetworkCoreEntity[MAX_PORT + 1];
+
+  // Local Data frames waiting for RX credit, by destination port; only ports with frames waiting
+  private static final Map<Integer, ArrayDeque<StagedFrame>> staged = new LinkedHashMap<>();
+  private static int stagedCount = 0;
+  private static int stagingCapacity = 0;
+
+  private record StagedFrame(NetworkCoreEntity source, DataFrame frame) {}
 
   private DataRouter() {
     // Utility class: prevent instantiation
@@ -36,15 +57,31 @@ public final class DataRouter {
     ServerLifecycleEvents.SERVER_STARTED.register(
         mcServer -> {
           DataRouter.server = mcServer;
+          stagingCapacity = NetworkCoreConfig.stagingCapacity();
           loadState();
         });
+    ServerTickEvents.START_SERVER_TICK.register(mcServer -> deliverStaged());
     ServerLifecycleEvents.SERVER_STOPPING.register(
         mcServer -> {
-          saveState();
+          if (journal != null) {
+            journal.close();
+            journal = null;
+          } else {
+            saveState();
+          }
           // Clear static state to avoid leakage across integrated server sessions
           allocation = new NetworkCorePortState();
+          Arrays.fill(liveByPort, null);
+          staged.clear();
+          stagedCount = 0;
           DataRouter.server = null;
         });
+    ServerBlockEntityEvents.BLOCK_ENTITY_UNLOAD.register(
+        (blockEntity, world) -> {
+          if (blockEntity instanceof NetworkCoreEntity core) {
+            unbindLive(core, core.getPort());
+          }
+        });
   }
 
   public static void sendLocalDataFrame(NetworkCoreEntity source, DataFrame frame) {
@@ -57,16 +94,81 @@ public final class DataRouter {
     }
     NetworkCoreEntity destination = getBlockEntityByPort(frame.getDstPort());
     if (destination != null && !destination.isRemoved()) {
-      if (!destination.sendFrame(frame)) {
-        // Queue full, send BLOCK_BUSY back to source
+      ArrayDeque<StagedFrame> waiting = staged.get(frame.getDstPort());
+      // Frames already waiting go first, so each sender's frames arrive in order
+      if (waiting == null && destination.getRuntime().getRxCredit() > 0) {
+        destination.sendFrame(frame);
+        return;
+      }
+      if (waiting == null) {
+        if (stagingCapacity == 0) {
+          destination.sendFrame(frame); // counts the overflow on the destination
+          emitBlockBusy(source, frame.getSrcPort());
+          return;
+        }
+        waiting = new ArrayDeque<>();
+        staged.put(frame.getDstPort(), waiting);
+      }
+      if (waiting.size() >= stagingCapacity) {
+        // Staging full as well, send BLOCK_BUSY back to source
         emitBlockBusy(source, frame.getSrcPort());
+        return;
       }
+      waiting.add(new StagedFrame(source, frame));
+      stagedCount++;
       return;
     }
     NetworkCore.LOGGER.warn("No NetworkCore listening on port {}", frame.getDstPort());
     emitPortUnreachable(source, frame.getDstPort());
   }
 
+  /** Local Data frames waiting for a busy destination. */
+  public static int getStagedFrames() {
+    return stagedCount;
+  }
+
+  /**
+   * Moves staged frames into destinations that have RX credit again, oldest first. Runs at the
+   * start of every server tick, so a slot freed during one redstone tick is refilled before the
+   * emitter looks for its next frame. Frames for a port nobody listens on any more are answered
+   * with PORT_UNREACHABLE, as a direct send would have been.
+   */
+  private static void deliverStaged() {
+    if (staged.isEmpty()) {
+      return;
+    }
+    Iterator<Map.Entry<Integer, ArrayDeque<StagedFrame>>> it = staged.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Integer, ArrayDeque<StagedFrame>> entry = it.next();
+      int port = entry.getKey();
+      ArrayDeque<StagedFrame> waiting = entry.getValue();
+      NetworkCoreEntity destination = getBlockEntityByPort(port);
+      if (destination == null || destination.isRemoved()) {
+        NetworkCore.LOGGER.warn(
+            "No NetworkCore listening on port {}; returning {} staged frame(s)",
+            port,
+            waiting.size());
+        for (StagedFrame pending : waiting) {
+          if (!pending.source().isRemoved()) {
+            emitPortUnreachable(pending.source(), port);
+          }
+        }
+        stagedCount -= waiting.size();
+        it.remove();
+        continue;
+      }
+      for (int credit = destination.getRuntime().getRxCredit();
+          credit > 0 && !waiting.isEmpty();
+          credit--) {
+        destination.sendFrame(waiting.poll().frame());
+        stagedCount--;
+      }
+      if (waiting.isEmpty()) {
+        it.remove();
+      }
+    }
+  }
+
   public static void deliverIPv4Frame(IPv4Frame frame) {
     if (frame == null) {
       return;
@@ -136,6 +238,11 @@ public final class DataRouter {
     if (port < MIN_PORT || port > MAX_PORT) {
       return null;
     }
+    NetworkCoreEntity live = liveByPort[port];
+    if (live != null && !live.isRemoved() && live.getPort() == port) {
+      return live;
+    }
+    liveByPort[port] = null;
     NetworkCorePortState.PortAllocation alloc = allocation.getAllocationByPort(port);
     if (alloc == null) {
       return null;
@@ -144,6 +251,7 @@ public final class DataRouter {
     ServerWorld world = server.getWorld(alloc.dimension);
     if (world != null && world.getBlockEntity(alloc.pos) instanceof NetworkCoreEntity nbe) {
       if (nbe.getPort() == port) {
+        liveByPort[port] = nbe;
         return nbe;
       }
     }
@@ -152,13 +260,34 @@ public final class DataRouter {
     return null;
   }
 
+  /** Publishes {@code core} as the live owner of its current port for fast delivery lookups. */
+  static void bindLive(NetworkCoreEntity core) {
+    int port = core.getPort();
+    if (port >= MIN_PORT && port <= MAX_PORT) {
+      liveByPort[port] = core;
+    }
+  }
+
+  /** Drops {@code core} from the live table if it still owns {@code port}. */
+  static void unbindLive(NetworkCoreEntity core, int port) {
+    if (port >= MIN_PORT && port <= MAX_PORT && liveByPort[port] == core) {
+      liveByPort[port] = null;
+    }
+  }
+
   public static void release(BlockPos pos, ServerWorld world) {
-    allocation.release(pos, world.getRegistryKey());
+    int released = allocation.release(pos, world.getRegistryKey());
+    if (released >= MIN_PORT
+        && liveByPort[released] != null
+        && liveByPort[released].getPos().equals(pos)
+        && liveByPort[released].getWorld() == world) {
+      liveByPort[released] = null;
+    }
   }
 
   public static Map<BlockPos, Integer> getAllocatedPorts(ServerWorld world) {
     Map<BlockPos, Integer> result = new HashMap<>();
-    for (var entry : allocation.byPos.entrySet()) {
+    for (var entry : allocation.snapshotByPos().entrySet()) {
       NetworkCorePortState.PortAllocation alloc = entry.getKey();
       int port = entry.getValue();
       // Only include allocations from the requested world
@@ -171,14 +300,12 @@ public final class DataRouter {
   }
 
   public static void saveState() {
-    int count = allocation.byPos.size();
+    int count = allocation.size();
     if (count > 0) {
       NetworkCore.LOGGER.info("Saving {} network core port allocation(s)", count);
     }
-    Path path = getStateFile();
     try {
-      Files.createDirectories(path.getParent());
-      NbtIo.writeCompressed(allocation.writeNbt(), path);
+      PortStateFile.write(allocation.snapshot(), getStateFile());
     } catch (IOException e) {
       NetworkCore.LOGGER.error("Failed to save network core ports", e);
     }
@@ -186,38 +313,87 @@ public final class DataRouter {
 
   public static void loadState() {
     Path path = getStateFile();
-    Path legacyPath = getLegacyStateFile();
-    boolean migratedFromLegacy = false;
-    if (!Files.exists(path) && Files.exists(legacyPath)) {
-      path = legacyPath;
-      migratedFromLegacy = true;
-    }
+    // False if a state file exists but could not be read
+    boolean loaded = true;
     if (Files.exists(path)) {
       try {
-        NbtCompound nbt = NbtIo.readCompressed(path, NbtSizeTracker.ofUnlimitedBytes());
-        allocation = NetworkCorePortState.fromNbt(nbt);
-        int count = allocation.byPos.size();
+        allocation = NetworkCorePortState.fromSnapshot(PortStateFile.read(path));
+        int count = allocation.size();
         if (count > 0) {
           NetworkCore.LOGGER.info("Loaded {} network core port allocation(s)", count);
         }
-        if (migratedFromLegacy) {
+      } catch (IOException e) {
+        NetworkCore.LOGGER.error("Failed to load network core ports", e);
+        loaded = false;
+        setAside(path);
+      }
+    } else {
+      // Migrate from the NBT formats written by earlier versions
+      Path oldPath = getNbtStateFile();
+      if (!Files.exists(oldPath)) {
+        oldPath = getLegacyStateFile();
+      }
+      if (Files.exists(oldPath)) {
+        try {
+          NbtCompound nbt = NbtIo.readCompressed(oldPath, NbtSizeTracker.ofUnlimitedBytes());
+          allocation = NetworkCorePortState.fromNbt(nbt);
+          NetworkCore.LOGGER.info(
+              "Migrating {} network core port allocation(s) from {}",
+              allocation.size(),
+              oldPath.getFileName());
           saveState();
-          try {
-            Files.deleteIfExists(legacyPath);
-          } catch (IOException e) {
-            // Ignore deletion failure
+          if (Files.exists(path)) {
+            try {
+              Files.deleteIfExists(oldPath);
+            } catch (IOException e) {
+              // Ignore deletion failure
+            }
           }
+        } catch (IOException e) {
+          NetworkCore.LOGGER.error("Failed to load network core ports", e);
+          loaded = false;
+          setAside(oldPath);
         }
-      } catch (IOException e) {
-        NetworkCore.LOGGER.error("Failed to load network core ports", e);
       }
     }
+    int replayed = PortStateJournal.replay(getJournalFile(), allocation);
+    if (replayed > 0) {
+      NetworkCore.LOGGER.info("Replayed {} network core port change(s) from journal", replayed);
+    }
+    allocation.setAllocationPolicy(NetworkCoreConfig.portAllocationPolicy());
+    journal = new PortStateJournal(allocation, getStateFile(), getJournalFile());
+    // Compacting now would replace what could not be read with a table that lacks it
+    journal.start(loaded);
+  }
+
+  /** Renames an unreadable state file to {@code <name>.corrupt}, keeping it for recovery. */
+  private static void setAside(Path path) {
+    Path aside = path.resolveSibling(path.getFileName() + ".corrupt");
+    try {
+      Files.move(path, aside, StandardCopyOption.REPLACE_EXISTING);
+      NetworkCore.LOGGER.error(
+          "Moved unreadable {} to {}; port allocations start empty", path.getFileName(), aside);
+    } catch (IOException e) {
+      NetworkCore.LOGGER.error("Failed to move unreadable {} aside", path, e);
+    }
   }
 
   private static Path getStateFile() {
+    return server.getSavePath(WorldSavePath.ROOT).resolve("data").resolve("network_core_ports.bin");
+  }
+
+  private static Path getNbtStateFile() {
+    // NBT snapshot written by earlier versions (kept for migration)
     return server.getSavePath(WorldSavePath.ROOT).resolve("data").resolve("network_core_ports.nbt");
   }
 
+  private static Path getJournalFile() {
+    return server
+        .getSavePath(WorldSavePath.ROOT)
+        .resolve("data")
+        .resolve("network_core_ports.journal");
+  }
+
   private static Path getLegacyStateFile() {
     // Legacy path used in earlier versions (no longer used, kept for migration)
     return server.getSavePath(WorldSavePath.ROOT).resolve("network_core_ports.dat");
@@ -262,7 +438,8 @@ public final class DataRouter {
     IPv4Router.sendFrame(response);
   }
 
-  private static void emitIpv4TargetBusy(IPv4Frame frame, int port) {
+  /** Answers {@code frame}'s sender with TARGET_BUSY for {@code port}. Safe from any thread. */
+  static void emitIpv4TargetBusy(IPv4Frame frame, int port) {
     if (port < 0) {
       return;
     }
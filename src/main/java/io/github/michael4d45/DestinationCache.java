@@ -0,0 +1,113 @@
+package io.github.michael4d45;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of outbound UDP destinations keyed by (IPv4 address, port).
+ *
+ * <p>A {@link Destination} keeps the resolved {@link InetSocketAddress} (so repeated sends to a
+ * peer reuse one address object and hit the same key in per-address maps) and the encoded
+ * NETWORK_ERROR reply to it; no buffers, so a large cache stays cheap. An evicted entry stays valid
+ * for datagrams that still reference it; the next send simply builds a new one.
+ */
+final class DestinationCache {
+
+  /** One cached peer address. */
+  static final class Destination {
+    final InetSocketAddress address;
+    // Reply to this peer's malformed datagrams; racy but idempotent initialization
+    private volatile PackedNibbles networkErrorReply;
+
+    Destination(InetSocketAddress address) {
+      this.address = address;
+    }
+
+    PackedNibbles networkErrorReply() {
+      return networkErrorReply;
+    }
+
+    void setNetworkErrorReply(PackedNibbles reply) {
+      networkErrorReply = reply;
+    }
+  }
+
+  private final LinkedHashMap<Long, Destination> entries;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  DestinationCache(int capacity) {
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Long, Destination> eldest) {
+            return size() > capacity;
+          }
+        };
+  }
+
+  /** Destination for {@code ip} (big-endian bits) and {@code port}; safe from any thread. */
+  Destination get(int ip, int port) {
+    Long key = key(ip, port);
+    synchronized (entries) {
+      Destination destination = entries.get(key);
+      if (destination != null) {
+        hits.incrementAndGet();
+        return destination;
+      }
+      misses.incrementAndGet();
+      destination = new Destination(new InetSocketAddress(toAddress(ip), port));
+      entries.put(key, destination);
+      return destination;
+    }
+  }
+
+  /** Destination for a datagram's sender; non-IPv4 senders are wrapped without caching. */
+  Destination get(InetSocketAddress address) {
+    if (!(address.getAddress() instanceof Inet4Address inet4)) {
+      return new Destination(address);
+    }
+    byte[] ip = inet4.getAddress();
+    int bits =
+        (ip[0] & 0xFF) << 24 | (ip[1] & 0xFF) << 16 | (ip[2] & 0xFF) << 8 | (ip[3] & 0xFF);
+    return get(bits, address.getPort());
+  }
+
+  long hits() {
+    return hits.get();
+  }
+
+  long misses() {
+    return misses.get();
+  }
+
+  int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  private static long key(int ip, int port) {
+    return (ip & 0xFFFFFFFFL) << 16 | (port & 0xFFFF);
+  }
+
+  private static InetAddress toAddress(int ip) {
+    try {
+      return InetAddress.getByAddress(
+          new byte[] {(byte) (ip >>> 24), (byte) (ip >>> 16), (byte) (ip >>> 8), (byte) ip});
+    } catch (UnknownHostException e) {
+      throw new AssertionError("4-byte address rejected", e); // only thrown for bad lengths
+    }
+  }
+}
@@ -12,25 +12,29 @@ public abstract class Frame {
   /**
    * Returns the payload / argument nibble sequence (LEN long).
    *
-   * <p>Callers must treat the returned array as immutable; subclasses are expected to return fresh
-   * copies to avoid exposing internal representation.
+   * <p>The result is immutable, so subclasses may return shared views of their internal storage.
    */
-  protected abstract int[] getPayloadArgs();
+  protected abstract PackedNibbles getPayloadArgs();
 
   /** Builds the nibble stream representing this frame (SOF..EOF inclusive). */
   public int[] buildSymbols() {
-    int[] args = getPayloadArgs();
-    if (args.length > 0xFF) {
+    return buildPackedSymbols().toIntArray();
+  }
+
+  /** Builds the packed nibble stream representing this frame (SOF..EOF inclusive). */
+  public PackedNibbles buildPackedSymbols() {
+    PackedNibbles args = getPayloadArgs();
+    if (args.length() > 0xFF) {
       throw new IllegalStateException("Payload length exceeds 255 nibbles");
     }
-    int[] symbols = new int[args.length + 6];
-    symbols[0] = 15; // SOF
-    symbols[1] = getType() & 0xF;
-    symbols[2] = getCode() & 0xF;
-    symbols[3] = (args.length >> 4) & 0xF; // LEN_HI
-    symbols[4] = args.length & 0xF; // LEN_LO
-    System.arraycopy(args, 0, symbols, 5, args.length);
-    symbols[symbols.length - 1] = 0; // EOF
-    return symbols;
+    return new PackedNibbles.Builder(args.length() + 6)
+        .add(15) // SOF
+        .add(getType())
+        .add(getCode())
+        .add(args.length() >> 4) // LEN_HI
+        .add(args.length()) // LEN_LO
+        .addAll(args)
+        .add(0) // EOF
+        .build();
   }
 }
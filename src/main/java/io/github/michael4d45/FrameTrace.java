@@ -0,0 +1,77 @@
+package io.github.michael4d45;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One-line, key=value trace of frames moving through cores and the UDP link, on the {@code
+ * network-core.trace} logger so it can be routed or silenced apart from the main log.
+ *
+ * <p>An event is logged if its core is traced ({@code /networkcore trace on}) or if it falls on
+ * the global sample ({@code trace.sampleEvery}). Call sites test {@link #wants} before building
+ * anything, so with both off a frame event costs one null check and one int compare. Lines never
+ * include payloads; use {@code stats} or a traced core's emitted symbols for those.
+ */
+final class FrameTrace {
+
+  enum Event {
+    /** A core's TX framer completed a frame. */
+    COMMITTED,
+    /** A frame entered a core's RX queue. */
+    QUEUED,
+    /** A frame was refused by a full or invalid RX queue. */
+    DROPPED,
+    /** A core finished emitting a frame on its receive face. */
+    EMITTED,
+    /** A frame arrived over UDP. */
+    UDP_IN,
+    /** A datagram left over UDP. */
+    UDP_OUT
+  }
+
+  private static final Logger TRACE = LoggerFactory.getLogger(NetworkCore.MOD_ID + ".trace");
+  private static final AtomicLong events = new AtomicLong();
+  // 0 = sampling off
+  private static int sampleEvery = 0;
+
+  private FrameTrace() {
+    // Utility class: prevent instantiation
+  }
+
+  static void init() {
+    sampleEvery = NetworkCoreConfig.traceSampleEvery();
+  }
+
+  /** Whether to log an event of a core traced under {@code tag} ({@code null} if not traced). */
+  static boolean wants(@Nullable String tag) {
+    return tag != null || (sampleEvery != 0 && events.incrementAndGet() % sampleEvery == 0);
+  }
+
+  static void frame(Event event, @Nullable String tag, Frame frame) {
+    TRACE.info(
+        "event={} core={} type={} code={} len={}",
+        event,
+        tag == null ? "-" : tag,
+        frame.getType(),
+        frame.getCode(),
+        frame.getPayloadArgs().length());
+  }
+
+  static void udp(Event event, InetSocketAddress peer, Frame frame) {
+    TRACE.info(
+        "event={} peer={} type={} code={} len={}",
+        event,
+        peer,
+        frame.getType(),
+        frame.getCode(),
+        frame.getPayloadArgs().length());
+  }
+
+  static void udp(Event event, InetSocketAddress peer, int bytes, int frames) {
+    TRACE.info("event={} peer={} bytes={} frames={}", event, peer, bytes, frames);
+  }
+}
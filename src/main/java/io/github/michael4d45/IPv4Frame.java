@@ -1,7 +1,11 @@
 package io.github.michael4d45;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * IPv4 frame for communication between Minecraft and remote IPv4 hosts.
  *
@@ -15,12 +19,18 @@ import java.util.Arrays;
  */
 public class IPv4Frame extends Frame {
 
+  // See TxFramerStateMachine.LOGGER
+  private static final Logger LOGGER = LoggerFactory.getLogger(NetworkCore.MOD_ID);
+
   private static final int ADDRESS_ARGS = 24;
+  // SOF..LEN (5) + addressing (24) + inner TYPE/CODE/LEN (4)
+  private static final int HEADER_NIBBLES = 5 + ADDRESS_ARGS + 4;
+  private static final int HEADER_LONG_BYTES = 16; // nibbles 0..31, as two longs
 
   private final int code;
-  private final byte[] dstIp; // 4 bytes
+  private final int dstIp; // 4 bytes, big-endian
   private final int dstUdpPort;
-  private final byte[] srcIp; // 4 bytes
+  private final int srcIp; // 4 bytes, big-endian
   private final int srcUdpPort;
   private final Frame encapsulatedFrame;
 
@@ -36,21 +46,31 @@ public class IPv4Frame extends Frame {
       byte[] srcIp,
       int srcUdpPort,
       Frame encapsulatedFrame) {
+    this(code, packIp(dstIp), dstUdpPort, packIp(srcIp), srcUdpPort, encapsulatedFrame);
+  }
+
+  IPv4Frame(
+      int code, int dstIp, int dstUdpPort, int srcIp, int srcUdpPort, Frame encapsulatedFrame) {
     this.code = code & 0xF;
     if (code != 0x0) {
-      NetworkCore.LOGGER.warn(
+      LOGGER.warn(
           "IPv4 frame created with non-zero CODE=0x{} (reserved for future use)",
           Integer.toHexString(code & 0xF).toUpperCase());
     }
-    this.dstIp = (dstIp == null) ? new byte[4] : dstIp.clone();
+    this.dstIp = dstIp;
     this.dstUdpPort = clampPort(dstUdpPort);
-    this.srcIp = (srcIp == null) ? new byte[4] : srcIp.clone();
+    this.srcIp = srcIp;
     this.srcUdpPort = clampPort(srcUdpPort);
     this.encapsulatedFrame = encapsulatedFrame;
   }
 
   public byte[] getDstIp() {
-    return dstIp.clone();
+    return unpackIp(dstIp);
+  }
+
+  /** Destination address as a big-endian int (no allocation). */
+  public int getDstIpBits() {
+    return dstIp;
   }
 
   public int getDstUdpPort() {
@@ -58,7 +78,12 @@ public class IPv4Frame extends Frame {
   }
 
   public byte[] getSrcIp() {
-    return srcIp.clone();
+    return unpackIp(srcIp);
+  }
+
+  /** Source address as a big-endian int (no allocation). */
+  public int getSrcIpBits() {
+    return srcIp;
   }
 
   public int getSrcUdpPort() {
@@ -84,22 +109,20 @@ public class IPv4Frame extends Frame {
   }
 
   @Override
-  protected int[] getPayloadArgs() {
-    int[] encapsulatedArgs = encapsulatedFrame.getPayloadArgs();
-    int encapsulatedLen = encapsulatedArgs.length;
-    int lenHi = (encapsulatedLen >> 4) & 0xF;
-    int lenLo = encapsulatedLen & 0xF;
-    int[] args = new int[ADDRESS_ARGS + 4 + encapsulatedArgs.length];
-    encodeIp(args, 0, dstIp);
-    encodePort(args, 8, dstUdpPort);
-    encodeIp(args, 12, srcIp);
-    encodePort(args, 20, srcUdpPort);
-    args[24] = encapsulatedFrame.getType();
-    args[25] = encapsulatedFrame.getCode();
-    args[26] = lenHi;
-    args[27] = lenLo;
-    System.arraycopy(encapsulatedArgs, 0, args, 28, encapsulatedArgs.length);
-    return args;
+  protected PackedNibbles getPayloadArgs() {
+    PackedNibbles encapsulatedArgs = encapsulatedFrame.getPayloadArgs();
+    int encapsulatedLen = encapsulatedArgs.length();
+    return new PackedNibbles.Builder(ADDRESS_ARGS + 4 + encapsulatedLen)
+        .addInt(dstIp)
+        .addPort(dstUdpPort)
+        .addInt(srcIp)
+        .addPort(srcUdpPort)
+        .add(encapsulatedFrame.getType())
+        .add(encapsulatedFrame.getCode())
+        .add(encapsulatedLen >> 4)
+        .add(encapsulatedLen)
+        .addAll(encapsulatedArgs)
+        .build();
   }
 
   @Override
@@ -107,76 +130,194 @@ public class IPv4Frame extends Frame {
     return String.format(
         "IPv4Frame{code=%d, dstIp=%s, dstUdpPort=%d, srcIp=%s, srcUdpPort=%d, payload=%s}",
         code,
-        Arrays.toString(dstIp),
+        Arrays.toString(getDstIp()),
         dstUdpPort,
-        Arrays.toString(srcIp),
+        Arrays.toString(getSrcIp()),
         srcUdpPort,
         encapsulatedFrame.toString());
   }
 
   public static IPv4Frame from(int code, int[] args) {
-    if (args.length < ADDRESS_ARGS + 4) {
+    return from(code, PackedNibbles.of(args));
+  }
+
+  public static IPv4Frame from(int code, PackedNibbles args) {
+    if (args.length() < ADDRESS_ARGS + 4) {
       throw new IllegalArgumentException("IPv4 frame payload too short");
     }
-    byte[] dstIp = decodeIp(args, 0);
+    int dstIp = decodeInt(args, 0);
     int dstUdpPort = decodePort(args, 8);
-    byte[] srcIp = decodeIp(args, 12);
+    int srcIp = decodeInt(args, 12);
     int srcUdpPort = decodePort(args, 20);
-    int encapsulatedType = args[24];
-    int encapsulatedCode = args[25];
-    int lenHi = args[26];
-    int lenLo = args[27];
+    int encapsulatedType = args.get(24);
+    int encapsulatedCode = args.get(25);
+    int lenHi = args.get(26);
+    int lenLo = args.get(27);
     int encapsulatedLen = (lenHi << 4) | lenLo;
-    if (args.length < ADDRESS_ARGS + 4 + encapsulatedLen) {
+    if (args.length() < ADDRESS_ARGS + 4 + encapsulatedLen) {
       throw new IllegalArgumentException("IPv4 frame encapsulated payload too short");
     }
-    int[] encapsulatedArgs =
-        Arrays.copyOfRange(args, ADDRESS_ARGS + 4, ADDRESS_ARGS + 4 + encapsulatedLen);
-    Frame encapsulatedFrame =
-        switch (encapsulatedType) {
-          case 0 -> DataFrame.from(encapsulatedCode, encapsulatedArgs);
-          case 1 -> new DataControlFrame(encapsulatedCode, encapsulatedArgs);
-          case 3 ->
-              throw new IllegalArgumentException(
-                  "IPv4 frames cannot encapsulate other IPv4 frames (type="
-                      + encapsulatedType
-                      + ")");
-          default ->
-              throw new IllegalArgumentException(
-                  "Unknown encapsulated frame type " + encapsulatedType);
-        };
+    PackedNibbles encapsulatedArgs =
+        args.slice(ADDRESS_ARGS + 4, ADDRESS_ARGS + 4 + encapsulatedLen);
+    Frame encapsulatedFrame = encapsulate(encapsulatedType, encapsulatedCode, encapsulatedArgs);
     return new IPv4Frame(code, dstIp, dstUdpPort, srcIp, srcUdpPort, encapsulatedFrame);
   }
 
-  private static void encodeIp(int[] target, int offset, byte[] address) {
-    byte[] addr = (address == null || address.length != 4) ? new byte[4] : address;
-    for (int i = 0; i < 4; i++) {
-      int b = addr[i] & 0xFF;
-      target[offset + (i * 2)] = (b >> 4) & 0xF;
-      target[offset + (i * 2) + 1] = b & 0xF;
+  /** Size of {@link #encodeTo} output in bytes: ⌈(LEN + 6) / 2⌉. */
+  public int encodedLength() {
+    return HEADER_LONG_BYTES + 1 + (encapsulatedFrame.getPayloadArgs().length() + 1) / 2;
+  }
+
+  /**
+   * Returns the UDP wire form of this frame, identical to packing {@link #buildPackedSymbols()}
+   * but written directly by {@link #encodeTo}.
+   */
+  public PackedNibbles encode() {
+    byte[] bytes = new byte[encodedLength()];
+    int nibbles = encodeTo(ByteBuffer.wrap(bytes));
+    return PackedNibbles.wrap(bytes).slice(0, nibbles);
+  }
+
+  /**
+   * Writes the UDP wire form (nibbles packed high first, odd tail padded with 0) at the buffer's
+   * position. The fixed 33-nibble header is laid down as two longs plus one nibble; the
+   * encapsulated payload then follows one nibble out of byte alignment and is shifted in a byte at
+   * a time.
+   *
+   * @return number of nibbles written (SOF..EOF, excluding padding)
+   */
+  public int encodeTo(ByteBuffer out) {
+    PackedNibbles inner = encapsulatedFrame.getPayloadArgs();
+    int innerLen = inner.length();
+    int len = ADDRESS_ARGS + 4 + innerLen;
+    if (len > 0xFF) {
+      throw new IllegalStateException("Payload length exceeds 255 nibbles");
+    }
+    long hi =
+        0xF3L << 56 // SOF, TYPE=3
+            | (long) code << 52
+            | (long) (len >> 4) << 48
+            | (long) (len & 0xF) << 44
+            | (dstIp & 0xFFFFFFFFL) << 12
+            | dstUdpPort >>> 4;
+    long lo =
+        (dstUdpPort & 0xFL) << 60
+            | (srcIp & 0xFFFFFFFFL) << 28
+            | (long) srcUdpPort << 12
+            | (long) encapsulatedFrame.getType() << 8
+            | (long) encapsulatedFrame.getCode() << 4
+            | innerLen >> 4;
+    out.putLong(hi).putLong(lo);
+    int pending = innerLen & 0xF; // nibble 32, completed by the first payload nibble
+    ByteBuffer payload = inner.asReadOnlyByteBuffer();
+    while (payload.hasRemaining()) {
+      int b = payload.get() & 0xFF;
+      out.put((byte) (pending << 4 | b >> 4));
+      pending = b & 0xF;
     }
+    // Even payload: last nibble + EOF. Odd payload: the zero pad nibble is EOF, then padding.
+    out.put((byte) (pending << 4));
+    return HEADER_NIBBLES + innerLen + 1;
   }
 
-  private static byte[] decodeIp(int[] source, int offset) {
-    byte[] result = new byte[4];
-    for (int i = 0; i < 4; i++) {
-      result[i] = (byte) ((source[offset + (i * 2)] << 4) | source[offset + (i * 2) + 1]);
+  /**
+   * Decodes one frame from the UDP wire form occupying exactly the buffer's remaining bytes, as
+   * produced by {@link #encodeTo}. Header fields are read at their fixed nibble offsets; only the
+   * encapsulated payload is copied out, so the buffer may be reused afterwards.
+   *
+   * @throws IllegalArgumentException if the bytes are not a well-formed IPv4 frame
+   */
+  public static IPv4Frame decode(ByteBuffer in) {
+    int start = in.position();
+    int bytes = in.remaining();
+    if (bytes < 3) {
+      throw new IllegalArgumentException("UDP payload too short for frame");
+    }
+    int b0 = in.get(start) & 0xFF;
+    int b1 = in.get(start + 1) & 0xFF;
+    int b2 = in.get(start + 2) & 0xFF;
+    if (b0 >> 4 != 15) {
+      throw new IllegalArgumentException("UDP payload missing SOF nibble");
+    }
+    int len = (b1 & 0xF) << 4 | b2 >> 4;
+    int nibbles = len + 6;
+    if ((nibbles + 1) / 2 != bytes) {
+      throw new IllegalArgumentException(
+          "UDP payload length mismatch (expected " + len + " got " + (bytes * 2 - 6) + ")");
     }
-    return result;
+    int eofByte = in.get(start + (nibbles - 1) / 2) & 0xFF;
+    // EOF is the high nibble when it falls on an even index (then the low nibble is padding)
+    if ((nibbles & 1) == 1 ? eofByte != 0 : (eofByte & 0xF) != 0) {
+      throw new IllegalArgumentException("UDP payload missing EOF nibble");
+    }
+    int type = b0 & 0xF;
+    if (type != 3) {
+      throw new IllegalArgumentException("Unsupported frame type " + type + " received over UDP");
+    }
+    if (len < ADDRESS_ARGS + 4) {
+      throw new IllegalArgumentException("IPv4 frame payload too short");
+    }
+    long hi = in.getLong(start);
+    long lo = in.getLong(start + 8);
+    int code = b1 >> 4;
+    int dstIp = (int) (hi >>> 12);
+    int dstUdpPort = (int) ((hi & 0xFFF) << 4 | lo >>> 60);
+    int srcIp = (int) (lo >>> 28);
+    int srcUdpPort = (int) (lo >>> 12) & 0xFFFF;
+    int encapsulatedType = (int) (lo >>> 8) & 0xF;
+    int encapsulatedCode = (int) (lo >>> 4) & 0xF;
+    int encapsulatedLen = (int) (lo & 0xF) << 4 | (in.get(start + HEADER_LONG_BYTES) & 0xFF) >> 4;
+    if (len < ADDRESS_ARGS + 4 + encapsulatedLen) {
+      throw new IllegalArgumentException("IPv4 frame encapsulated payload too short");
+    }
+    // Payload starts at nibble 33: the low half of byte 16
+    byte[] copy = new byte[(encapsulatedLen + 2) / 2];
+    in.get(start + HEADER_LONG_BYTES, copy);
+    PackedNibbles encapsulatedArgs = PackedNibbles.wrap(copy).slice(1, 1 + encapsulatedLen);
+    Frame encapsulatedFrame = encapsulate(encapsulatedType, encapsulatedCode, encapsulatedArgs);
+    return new IPv4Frame(code, dstIp, dstUdpPort, srcIp, srcUdpPort, encapsulatedFrame);
+  }
+
+  private static Frame encapsulate(int type, int code, PackedNibbles args) {
+    return switch (type) {
+      case 0 -> DataFrame.from(code, args);
+      case 1 -> new DataControlFrame(code, args);
+      case 3 ->
+          throw new IllegalArgumentException(
+              "IPv4 frames cannot encapsulate other IPv4 frames (type=" + type + ")");
+      default -> throw new IllegalArgumentException("Unknown encapsulated frame type " + type);
+    };
+  }
+
+  private static int packIp(byte[] address) {
+    if (address == null || address.length != 4) {
+      return 0;
+    }
+    return ((address[0] & 0xFF) << 24)
+        | ((address[1] & 0xFF) << 16)
+        | ((address[2] & 0xFF) << 8)
+        | (address[3] & 0xFF);
   }
 
-  private static void encodePort(int[] target, int offset, int port) {
-    target[offset] = (port >> 12) & 0xF;
-    target[offset + 1] = (port >> 8) & 0xF;
-    target[offset + 2] = (port >> 4) & 0xF;
-    target[offset + 3] = port & 0xF;
+  private static byte[] unpackIp(int bits) {
+    return new byte[] {
+      (byte) (bits >>> 24), (byte) (bits >>> 16), (byte) (bits >>> 8), (byte) bits
+    };
+  }
+
+  private static int decodeInt(PackedNibbles source, int offset) {
+    int value = 0;
+    for (int i = 0; i < 8; i++) {
+      value = (value << 4) | source.get(offset + i);
+    }
+    return value;
   }
 
-  private static int decodePort(int[] source, int offset) {
-    return (source[offset] << 12)
-        | (source[offset + 1] << 8)
-        | (source[offset + 2] << 4)
-        | source[offset + 3];
+  private static int decodePort(PackedNibbles source, int offset) {
+    return (source.get(offset) << 12)
+        | (source.get(offset + 1) << 8)
+        | (source.get(offset + 2) << 4)
+        | source.get(offset + 3);
   }
 
   private static int clampPort(int value) {
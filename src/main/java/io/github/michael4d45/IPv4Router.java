@@ -1,45 +1,215 @@
 package io.github.michael4d45;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 
+/**
+ * UDP transport for {@link IPv4Frame}s, built on a non-blocking {@link DatagramChannel} driven by a
+ * single selector thread.
+ *
+ * <p>{@link #sendFrame} only encodes the frame and enqueues it; the I/O thread performs the actual
+ * send, so a slow or unreachable peer never stalls the server tick. Send failures are answered
+ * with HOST_UNREACHABLE from the I/O thread, exactly as the synchronous path used to. Receives go
+ * through pooled direct buffers and are decoded straight from them; sends are copied into one
+ * direct buffer owned by the I/O thread, and destinations come from a {@link DestinationCache}.
+ * On Linux, {@code udp.receiveThreads} adds SO_REUSEPORT sockets on the same port, each with its
+ * own blocking receive thread, so decoding runs on several cores; only delivery is serialized onto
+ * the server thread.
+ *
+ * <p>A failed receive or send, or a datagram that throws while being handled, is logged (at most
+ * once per ten seconds) and skipped; only closing the sockets ends the I/O and receive threads.
+ *
+ * <p>Received frames are handed to the server thread through a bounded {@link MpscRing} that is
+ * drained at the start of every server tick, up to {@code udp.inboundFramesPerTick} frames. When
+ * the ring is full a Data frame's sender gets TARGET_BUSY instead; other frames are dropped.
+ *
+ * <p>Every source address has a {@link SourceRateLimiter} budget for datagrams, checked before
+ * decoding, and a smaller one for the NETWORK_ERROR / TARGET_BUSY replies (and warnings) its bad
+ * datagrams trigger, so a flooding peer is mostly dropped at the cost of one CAS per datagram.
+ *
+ * <p>With {@code udp.batching} enabled, frames queued for the same destination during a tick are
+ * sent as one {@link UdpContainer} datagram, but only to peers that answered a HELLO probe; every
+ * other peer keeps receiving one frame per datagram. Containers are always accepted on receive.
+ */
 public class IPv4Router {
 
   private static final int UDP_PORT_START = 12345;
+  private static final int MAX_DATAGRAM_BYTES = 2048; // Max payload size
+  // Batches stay below a typical 1500-byte MTU so they are never IP-fragmented
+  private static final int BATCH_MAX_BYTES = 1400;
+  private static final int OUTBOUND_CAPACITY = 4096;
+  private static final int BUFFER_POOL_SIZE = 8;
+  private static final long PROBE_TIMEOUT_MS = 5_000;
+  private static final long LEGACY_RECHECK_MS = 60_000;
+  private static final long BATCHING_RECHECK_MS = 300_000;
+  private static final int MAX_TRACKED_PEERS = 4096;
+  private static final long ERROR_LOG_INTERVAL_NANOS = 10_000_000_000L;
 
-  private static DatagramSocket socket;
-  private static Thread receiveThread;
+  private static DatagramChannel channel;
+  private static Selector selector;
+  private static SelectionKey selectionKey;
+  private static Thread ioThread;
+  // Extra sockets bound to udpPort with SO_REUSEPORT, each drained by its own receive thread
+  private static final List<DatagramChannel> shards = new ArrayList<>();
+  private static final List<Thread> shardThreads = new ArrayList<>();
   private static volatile boolean running = false;
   private static int udpPort;
   private static InetAddress localAddress;
 
+  private static final Queue<Outbound> outbound = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger outboundSize = new AtomicInteger();
+  private static final AtomicBoolean wakeupPending = new AtomicBoolean();
+  private static final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+  // Rate limit for errors the I/O and receive loops log and carry on from
+  private static final AtomicLong lastLoopErrorLog =
+      new AtomicLong(System.nanoTime() - ERROR_LOG_INTERVAL_NANOS);
+  private static final AtomicLong suppressedLoopErrors = new AtomicLong();
+  // Datagrams refused by a full send queue, and when that was last logged
+  private static final AtomicLong sendQueueDrops = new AtomicLong();
+  private static final AtomicLong lastSendQueueDropLog =
+      new AtomicLong(System.nanoTime() - ERROR_LOG_INTERVAL_NANOS);
+
+  // Received frames waiting for the server thread, drained once per tick
+  private static volatile MpscRing<IPv4Frame> inbound;
+  private static int inboundFramesPerTick;
+
+  // Coalesce frames per destination each tick (udp.batching), for peers that answered HELLO
+  private static volatile boolean batching;
+  // Access-ordered, so a full table drops the peer consulted least recently; guarded by itself
+  private static final Map<InetSocketAddress, Peer> peers =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<InetSocketAddress, Peer> eldest) {
+          return size() > MAX_TRACKED_PEERS;
+        }
+      };
+
+  // I/O thread only: datagrams ready for the socket; the head is retried while the buffer is full,
+  // and nothing more is taken from outbound until it has gone
+  private static final ArrayDeque<Outbound> ready = new ArrayDeque<>();
+  // I/O thread only: every datagram is copied here for the send, whatever its destination
+  private static final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_BYTES);
+
+  // Resolved destinations, replaced at startup with the configured size
+  private static volatile DestinationCache destinations = new DestinationCache(256);
+
+  // Per-source budgets for received datagrams and for the error replies they trigger
+  private static volatile SourceRateLimiter ingressLimiter = new SourceRateLimiter(0);
+  private static volatile SourceRateLimiter errorReplyLimiter = new SourceRateLimiter(0);
+
+  private static final IPv4Frame[] NO_SOURCES = new IPv4Frame[0];
+
+  /** Encoded datagram waiting for the I/O thread. */
+  private static final class Outbound {
+    final DestinationCache.Destination destination;
+    final byte[] data;
+    // The single frame carried, or null for containers
+    final PackedNibbles symbols;
+    // Frames to answer with HOST_UNREACHABLE if the send fails; empty for router-generated replies
+    final IPv4Frame[] sources;
+    // HELLO only: the peer probed, whose probe is armed once this leaves the socket
+    Peer probe;
+
+    Outbound(DestinationCache.Destination destination, PackedNibbles symbols, IPv4Frame source) {
+      this.destination = destination;
+      this.data = nibblesToBytes(symbols);
+      this.symbols = symbols;
+      this.sources = source != null ? new IPv4Frame[] {source} : NO_SOURCES;
+    }
+
+    Outbound(DestinationCache.Destination destination, byte[] container, IPv4Frame[] sources) {
+      this.destination = destination;
+      this.data = container;
+      this.symbols = null;
+      this.sources = sources;
+    }
+  }
+
+  private enum PeerMode {
+    PROBING,
+    BATCHING,
+    LEGACY
+  }
+
+  /** What a remote router understands, learned from its answer to HELLO. */
+  private static final class Peer {
+    volatile PeerMode mode = PeerMode.PROBING;
+    // PROBING: when to give up waiting; BATCHING and LEGACY: when to probe again
+    volatile long until;
+    // When the pending HELLO was sent; 0 until then and once a reply has been taken as its answer
+    final AtomicLong probeSentAt = new AtomicLong();
+  }
+
   public static void init() {
     ServerLifecycleEvents.SERVER_STARTED.register(
         mcServer -> {
+          inbound = new MpscRing<>(NetworkCoreConfig.udpInboundQueueCapacity());
+          inboundFramesPerTick = NetworkCoreConfig.udpInboundFramesPerTick();
+          batching = NetworkCoreConfig.udpBatching();
+          destinations = new DestinationCache(NetworkCoreConfig.udpDestinationCacheSize());
+          ingressLimiter = new SourceRateLimiter(NetworkCoreConfig.udpIngressPerSecond());
+          errorReplyLimiter = new SourceRateLimiter(NetworkCoreConfig.udpErrorRepliesPerSecond());
+          sendQueueDrops.set(0);
+          int workers = NetworkCoreConfig.udpReceiveThreads();
+          boolean shard = workers > 1 && reusePortSupported();
+          if (workers > 1 && !shard) {
+            NetworkCore.LOGGER.warn(
+                "udp.receiveThreads={} needs SO_REUSEPORT on Linux; using one receive thread",
+                workers);
+          }
           int port = UDP_PORT_START;
           while (port <= 65535) {
             try {
-              socket = new DatagramSocket(port);
-              udpPort = port;
-              localAddress = socket.getLocalAddress();
-              NetworkCore.LOGGER.info("IPv4Router listening on UDP port {}", udpPort);
+              open(port, shard ? workers : 1);
+              NetworkCore.LOGGER.info(
+                  "IPv4Router listening on UDP port {} with {} receive thread(s)",
+                  udpPort,
+                  shards.size() + 1);
               running = true;
-              receiveThread = new Thread(IPv4Router::receiveLoop, "IPv4Router-Receive");
-              receiveThread.setDaemon(true);
-              receiveThread.start();
+              ioThread = new Thread(IPv4Router::ioLoop, "IPv4Router-IO");
+              ioThread.setDaemon(true);
+              ioThread.start();
+              for (int i = 0; i < shards.size(); i++) {
+                DatagramChannel shardChannel = shards.get(i);
+                Thread thread =
+                    new Thread(() -> shardLoop(shardChannel), "IPv4Router-Receive-" + (i + 1));
+                thread.setDaemon(true);
+                thread.start();
+                shardThreads.add(thread);
+              }
               break;
-            } catch (SocketException e) {
+            } catch (IOException e) {
+              closeQuietly();
               port++;
             }
           }
-          if (socket == null) {
+          if (channel == null) {
             NetworkCore.LOGGER.error(
                 "Failed to find a free UDP port starting from {}", UDP_PORT_START);
           }
@@ -48,186 +218,628 @@ public class IPv4Router {
     ServerLifecycleEvents.SERVER_STOPPING.register(
         mcServer -> {
           running = false;
-          if (socket != null) {
-            socket.close();
+          if (selector != null) {
+            selector.wakeup();
+          }
+          if (ioThread != null) {
+            try {
+              ioThread.join(1000);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            ioThread = null;
+          }
+          // Closing the shard sockets unblocks their receive threads
+          closeQuietly();
+          for (Thread thread : shardThreads) {
+            try {
+              thread.join(1000);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
           }
-          if (receiveThread != null) {
-            receiveThread.interrupt();
+          shardThreads.clear();
+          inbound = null;
+          outbound.clear();
+          outboundSize.set(0);
+          ready.clear();
+          synchronized (peers) {
+            peers.clear();
           }
+          destinations.clear();
+          ingressLimiter.clear();
+          errorReplyLimiter.clear();
         });
+    ServerTickEvents.START_SERVER_TICK.register(mcServer -> drainInbound());
+    ServerTickEvents.END_SERVER_TICK.register(mcServer -> flushTick());
+  }
+
+  /**
+   * Binds {@code workers} sockets to {@code port}. With more than one, every socket sets
+   * SO_REUSEPORT and the kernel spreads datagrams across them by source address, so each peer's
+   * frames stay on one thread and keep their order.
+   */
+  private static void open(int port, int workers) throws IOException {
+    boolean reusePort = workers > 1;
+    if (reusePort) {
+      // Plain bind first, so we never join another process's SO_REUSEPORT group on this port
+      try (DatagramChannel probe = DatagramChannel.open()) {
+        probe.bind(new InetSocketAddress(port));
+      }
+    }
+    channel = openChannel(port, reusePort);
+    channel.configureBlocking(false);
+    selector = Selector.open();
+    selectionKey = channel.register(selector, SelectionKey.OP_READ);
+    for (int i = 1; i < workers; i++) {
+      shards.add(openChannel(port, true));
+    }
+    udpPort = port;
+    localAddress = ((InetSocketAddress) channel.getLocalAddress()).getAddress();
+  }
+
+  private static DatagramChannel openChannel(int port, boolean reusePort) throws IOException {
+    DatagramChannel opened = DatagramChannel.open();
+    try {
+      if (reusePort) {
+        opened.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+      }
+      opened.bind(new InetSocketAddress(port));
+      return opened;
+    } catch (IOException e) {
+      opened.close();
+      throw e;
+    }
+  }
+
+  // Only Linux balances SO_REUSEPORT sockets; BSD/macOS hand everything to the last one bound
+  private static boolean reusePortSupported() {
+    if (!System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("linux")) {
+      return false;
+    }
+    try (DatagramChannel probe = DatagramChannel.open()) {
+      return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static void closeQuietly() {
+    try {
+      if (selector != null) {
+        selector.close();
+      }
+      if (channel != null) {
+        channel.close();
+      }
+      for (DatagramChannel shard : shards) {
+        shard.close();
+      }
+    } catch (IOException e) {
+      NetworkCore.LOGGER.debug("Error closing UDP channel", e);
+    }
+    selector = null;
+    selectionKey = null;
+    channel = null;
+    shards.clear();
   }
 
   public static void sendFrame(Frame frame) {
-    if (socket == null) {
+    if (channel == null) {
       NetworkCore.LOGGER.warn("IPv4Router not initialized, cannot send frame");
       return;
     }
     switch (frame) {
-      case IPv4Frame ipv4Frame -> {
-        if (!sendUdp(ipv4Frame.getDstIp(), ipv4Frame.getDstUdpPort(), ipv4Frame.buildSymbols())) {
-          // Send HOST_UNREACHABLE (Data Control code 0xA) back
-          DataControlFrame errorControl =
-              new DataControlFrame(0xA, encodeIp(ipv4Frame.getDstIp())); // HOST_UNREACHABLE
-          IPv4Frame errorFrame =
-              new IPv4Frame(
-                  ipv4Frame.getSrcIp(),
-                  ipv4Frame.getSrcUdpPort(),
-                  getLocalIpBytes(),
-                  udpPort,
-                  errorControl);
-          sendUdp(errorFrame.getDstIp(), errorFrame.getDstUdpPort(), errorFrame.buildSymbols());
-        }
-      }
+      case IPv4Frame ipv4Frame ->
+          sendUdp(
+              ipv4Frame.getDstIpBits(),
+              ipv4Frame.getDstUdpPort(),
+              ipv4Frame.encode(),
+              ipv4Frame);
       default ->
           NetworkCore.LOGGER.warn(
               "Unsupported frame type for IPv4Router: {}", frame.getClass().getSimpleName());
     }
   }
 
-  private static void receiveLoop() {
-    byte[] buffer = new byte[1024]; // Max payload size
+  private static void ioLoop() {
     while (running) {
       try {
-        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-        socket.receive(packet);
-        byte[] data = Arrays.copyOf(packet.getData(), packet.getLength());
-
-        int[] nibbles = bytesToNibbles(data);
-        Frame frame = parseFrameFromNibbles(nibbles);
-        if (frame == null) {
-          // Send NETWORK_ERROR (Data Control code 0xB) back to sender
-          DataControlFrame errorControl = new DataControlFrame(0xB, new int[0]); // NETWORK_ERROR
-          IPv4Frame errorFrame =
-              new IPv4Frame(
-                  packet.getAddress().getAddress(),
-                  packet.getPort(),
-                  getLocalIpBytes(),
-                  udpPort,
-                  errorControl);
-          sendUdp(errorFrame.getDstIp(), errorFrame.getDstUdpPort(), errorFrame.buildSymbols());
+        selector.select();
+        wakeupPending.set(false);
+        selector.selectedKeys().clear();
+        if (selectionKey.isValid() && selectionKey.isReadable()) {
+          receiveAll();
+        }
+        flushOutbound();
+      } catch (ClosedChannelException | ClosedSelectorException | CancelledKeyException e) {
+        // Shutting down
+        return;
+      } catch (IOException | RuntimeException e) {
+        logLoopError("IPv4Router I/O loop error", e);
+      }
+    }
+    // Best effort: push out replies queued before shutdown
+    try {
+      flushOutbound();
+    } catch (IOException | ClosedSelectorException | CancelledKeyException e) {
+      // Already closed
+    }
+  }
+
+  /** Blocking receive loop for one SO_REUSEPORT shard; decodes in parallel with the others. */
+  private static void shardLoop(DatagramChannel shard) {
+    ByteBuffer buffer = acquireBuffer();
+    try {
+      while (running) {
+        buffer.clear();
+        SocketAddress sender;
+        try {
+          sender = shard.receive(buffer);
+        } catch (ClosedChannelException e) {
+          // Shutting down
+          return;
+        } catch (IOException e) {
+          logLoopError("IPv4Router receive thread error", e);
           continue;
         }
-        NetworkCore.LOGGER.info("Received UDP packet, parsed frame {}", frame);
-        Frame finalFrame = frame;
-        var srv = DataRouter.server;
-        if (srv != null) {
-          srv.execute(
-              () -> {
-                switch (finalFrame) {
-                  case IPv4Frame ipv4Frame -> DataRouter.deliverIPv4Frame(ipv4Frame);
-                  default -> {}
-                }
-              });
-        } else {
-          NetworkCore.LOGGER.debug("Discarding frame received during shutdown: {}", finalFrame);
+        buffer.flip();
+        dispatch(sender, buffer);
+      }
+    } finally {
+      releaseBuffer(buffer);
+    }
+  }
+
+  private static void receiveAll() throws ClosedChannelException {
+    ByteBuffer buffer = acquireBuffer();
+    try {
+      while (true) {
+        buffer.clear();
+        SocketAddress sender;
+        try {
+          sender = channel.receive(buffer);
+        } catch (ClosedChannelException e) {
+          throw e;
+        } catch (IOException e) {
+          // e.g. an ICMP error surfacing on Windows; select() reports anything still pending
+          logLoopError("Failed to receive UDP packet", e);
+          return;
         }
-      } catch (IOException e) {
-        if (running) {
-          NetworkCore.LOGGER.error("Error receiving UDP packet", e);
+        if (sender == null) {
+          return;
         }
+        buffer.flip();
+        dispatch(sender, buffer);
       }
+    } finally {
+      releaseBuffer(buffer);
     }
   }
 
-  /**
-   * Converts a nibble array to bytes for UDP transmission.
-   *
-   * <p>Packs two nibbles per byte (high nibble in upper 4 bits, low nibble in lower 4 bits). For
-   * odd-length nibble arrays, the last byte's low nibble is padded with 0.
-   *
-   * <p>Example: [0xF, 0x3, 0xA] → bytes [0xF3, 0xA0]
-   *
-   * <p>This padding is symmetric with bytesToNibbles and preserves EOF semantics:
-   * Frame.buildSymbols() always produces arrays ending with EOF=0. If the frame has an odd number
-   * of nibbles (excluding SOF/EOF), the padding creates an even-length byte array where the
-   * trailing 0 nibble matches EOF, ensuring correct parsing on the receiving end.
-   *
-   * @param nibbles array of 4-bit values (0-15)
-   * @return byte array with length ⌈nibbles.length / 2⌉
-   */
-  private static byte[] nibblesToBytes(int[] nibbles) {
-    int byteLen = (nibbles.length + 1) / 2; // Round up
-    byte[] bytes = new byte[byteLen];
-    for (int i = 0; i < nibbles.length; i += 2) {
-      int high = nibbles[i] & 0xF;
-      int low = (i + 1 < nibbles.length) ? nibbles[i + 1] & 0xF : 0;
-      bytes[i / 2] = (byte) ((high << 4) | low);
+  /** {@link #handleDatagram}, logging rather than propagating a failure so the loop goes on. */
+  private static void dispatch(SocketAddress sender, ByteBuffer data) {
+    try {
+      handleDatagram((InetSocketAddress) sender, data);
+    } catch (RuntimeException e) {
+      logLoopError("Failed to handle UDP packet from " + sender, e);
     }
-    return bytes;
   }
 
   /**
-   * Unpacks bytes received from UDP into a nibble array.
-   *
-   * <p>Each byte is split into two nibbles (upper 4 bits → first nibble, lower 4 bits → second
-   * nibble). This is the inverse of nibblesToBytes.
-   *
-   * <p>The returned array always has even length (bytes.length * 2). Any padding added by
-   * nibblesToBytes for odd-length frames is preserved, ensuring the trailing EOF nibble (0) is
-   * correctly recognized by the frame parser.
-   *
-   * @param bytes UDP packet data
-   * @return nibble array with length = bytes.length * 2
+   * Logs an error a receive or I/O loop survives. At most one line per {@link
+   * #ERROR_LOG_INTERVAL_NANOS}, reporting how many were skipped since the last.
    */
-  private static int[] bytesToNibbles(byte[] bytes) {
-    int[] nibbles = new int[bytes.length * 2];
-    for (int i = 0; i < bytes.length; i++) {
-      nibbles[i * 2] = (bytes[i] >> 4) & 0xF;
-      nibbles[i * 2 + 1] = bytes[i] & 0xF;
+  private static void logLoopError(String message, Throwable e) {
+    if (!logDue(lastLoopErrorLog)) {
+      suppressedLoopErrors.incrementAndGet();
+      return;
+    }
+    long suppressed = suppressedLoopErrors.getAndSet(0);
+    NetworkCore.LOGGER.error("{} ({} similar errors not logged)", message, suppressed, e);
+  }
+
+  /** Whether a line rate-limited by {@code lastLog} may be written now; if so, claims the slot. */
+  private static boolean logDue(AtomicLong lastLog) {
+    long now = System.nanoTime();
+    long last = lastLog.get();
+    return now - last >= ERROR_LOG_INTERVAL_NANOS && lastLog.compareAndSet(last, now);
+  }
+
+  /** Handles one received datagram; {@code data} is only valid for the duration of the call. */
+  private static void handleDatagram(InetSocketAddress sender, ByteBuffer data) {
+    // Over-budget sources are dropped before any decoding, logging or reply
+    if (!ingressLimiter.tryAcquire(sender.getAddress())) {
+      return;
+    }
+    if (UdpContainer.isContainer(data)) {
+      handleContainer(sender, data);
+    } else {
+      handleFrame(sender, data);
+    }
+  }
+
+  private static void handleContainer(InetSocketAddress sender, ByteBuffer data) {
+    byte version = data.get(data.position() + 1);
+    byte kind = data.get(data.position() + 2);
+    if (version != UdpContainer.VERSION) {
+      if (allowErrorReply(sender)) {
+        NetworkCore.LOGGER.warn("Unsupported UDP container version {} from {}", version, sender);
+        sendNetworkError(sender);
+      }
+      return;
+    }
+    switch (kind) {
+      case UdpContainer.KIND_HELLO ->
+          enqueue(
+              new Outbound(
+                  destinations.get(sender),
+                  UdpContainer.control(UdpContainer.KIND_HELLO_ACK),
+                  NO_SOURCES));
+      case UdpContainer.KIND_HELLO_ACK -> {
+        // Unsolicited acks are ignored, so a spoofed one cannot start batches to a legacy peer
+        Peer peer;
+        synchronized (peers) {
+          peer = peers.get(sender);
+        }
+        long now = System.currentTimeMillis();
+        if (peer != null && takeProbeAnswer(peer, now)) {
+          peer.mode = PeerMode.BATCHING;
+          peer.until = now + BATCHING_RECHECK_MS;
+          NetworkCore.LOGGER.debug("Peer {} accepts batched frames", sender);
+        }
+      }
+      case UdpContainer.KIND_BATCH -> {
+        List<ByteBuffer> frames;
+        try {
+          frames = UdpContainer.split(data);
+        } catch (IllegalArgumentException ex) {
+          if (allowErrorReply(sender)) {
+            NetworkCore.LOGGER.warn("Malformed UDP batch from {}: {}", sender, ex.getMessage());
+            sendNetworkError(sender);
+          }
+          return;
+        }
+        for (ByteBuffer frame : frames) {
+          handleFrame(sender, frame);
+        }
+      }
+      default -> {
+        if (allowErrorReply(sender)) {
+          NetworkCore.LOGGER.warn("Unknown UDP container kind {} from {}", kind, sender);
+          sendNetworkError(sender);
+        }
+      }
     }
-    return nibbles;
   }
 
-  private static boolean sendUdp(byte[] dstIp, int dstUdpPort, int[] symbols) {
+  // Only IPv4 frames are supported over UDP.
+  private static void handleFrame(InetSocketAddress sender, ByteBuffer data) {
+    IPv4Frame frame;
     try {
-      byte[] data = nibblesToBytes(symbols);
-      InetAddress address = InetAddress.getByAddress(dstIp);
-      DatagramPacket packet = new DatagramPacket(data, data.length, address, dstUdpPort);
-      socket.send(packet);
-      NetworkCore.LOGGER.info(
-          "Sent UDP packet to {}:{} with {} bytes", address, dstUdpPort, data.length);
-      return true;
-    } catch (IOException e) {
-      NetworkCore.LOGGER.error("Failed to send UDP packet", e);
+      frame = IPv4Frame.decode(data);
+    } catch (IllegalArgumentException ex) {
+      if (allowErrorReply(sender)) {
+        NetworkCore.LOGGER.warn("Failed to decode UDP frame from {}: {}", sender, ex.getMessage());
+        sendNetworkError(sender);
+      }
+      return;
+    }
+    if (FrameTrace.wants(null)) {
+      FrameTrace.udp(FrameTrace.Event.UDP_IN, sender, frame);
+    }
+    if (isProbeRejection(sender, frame)) {
+      return;
+    }
+    MpscRing<IPv4Frame> queue = inbound;
+    if (queue == null || DataRouter.server == null) {
+      NetworkCore.LOGGER.debug("Discarding frame received during shutdown: {}", frame);
+    } else if (!queue.offer(frame)
+        && frame.getEncapsulatedFrame() instanceof DataFrame dataFrame
+        && allowErrorReply(sender)) {
+      // Server thread is behind; push back instead of growing without bound. Control and error
+      // frames are dropped silently, so two busy routers cannot bounce TARGET_BUSY at each other.
+      DataRouter.emitIpv4TargetBusy(frame, dataFrame.getDstPort());
+    }
+  }
+
+  /** Whether {@code sender} may get another error reply (and its log line) right now. */
+  private static boolean allowErrorReply(InetSocketAddress sender) {
+    return errorReplyLimiter.tryAcquire(sender.getAddress());
+  }
+
+  private static void sendNetworkError(InetSocketAddress sender) {
+    DestinationCache.Destination destination = destinations.get(sender);
+    // The reply only depends on the sender, so repeat offenders reuse the encoded frame
+    PackedNibbles reply = destination.networkErrorReply();
+    if (reply == null) {
+      // Send NETWORK_ERROR (Data Control code 0xB) back to sender
+      DataControlFrame errorControl = new DataControlFrame(0xB, new int[0]); // NETWORK_ERROR
+      IPv4Frame errorFrame =
+          new IPv4Frame(
+              sender.getAddress().getAddress(),
+              sender.getPort(),
+              getLocalIpBytes(),
+              udpPort,
+              errorControl);
+      reply = errorFrame.encode();
+      destination.setNetworkErrorReply(reply);
+    }
+    enqueue(new Outbound(destination, reply, null));
+  }
+
+  /**
+   * A legacy router answers our HELLO with NETWORK_ERROR; swallow that reply and stop batching to
+   * it instead of delivering the error to a core. Only the first NETWORK_ERROR from the peer after
+   * the HELLO left the socket, and before the probe times out, is taken as that answer.
+   */
+  private static boolean isProbeRejection(InetSocketAddress sender, IPv4Frame frame) {
+    if (!(frame.getEncapsulatedFrame() instanceof DataControlFrame control)
+        || control.getCode() != 0xB) {
       return false;
     }
+    Peer peer;
+    synchronized (peers) {
+      peer = peers.get(sender);
+    }
+    long now = System.currentTimeMillis();
+    if (peer == null || !takeProbeAnswer(peer, now)) {
+      return false;
+    }
+    peer.mode = PeerMode.LEGACY;
+    peer.until = now + LEGACY_RECHECK_MS;
+    NetworkCore.LOGGER.debug("Peer {} does not understand batched frames", sender);
+    return true;
+  }
+
+  /**
+   * Claims the reply to {@code peer}'s outstanding HELLO: true at most once per probe, and only
+   * while the HELLO has been sent and has not timed out.
+   */
+  private static boolean takeProbeAnswer(Peer peer, long now) {
+    long sentAt = peer.probeSentAt.get();
+    return peer.mode == PeerMode.PROBING
+        && sentAt != 0
+        && now < peer.until
+        && peer.probeSentAt.compareAndSet(sentAt, 0);
+  }
+
+  /** Delivers up to the per-tick budget of received frames. Server thread only. */
+  private static void drainInbound() {
+    MpscRing<IPv4Frame> queue = inbound;
+    if (queue == null) {
+      return;
+    }
+    for (int i = 0; i < inboundFramesPerTick; i++) {
+      IPv4Frame frame = queue.poll();
+      if (frame == null) {
+        return;
+      }
+      DataRouter.deliverIPv4Frame(frame);
+    }
+  }
+
+  private static void flushOutbound() throws IOException {
+    // While the socket is backed up, new datagrams stay in the bounded outbound queue
+    if (sendReady()) {
+      collectOutbound();
+      sendReady();
+    }
+  }
+
+  /** Sends {@code ready} in order; false, with OP_WRITE watched, if the socket fills first. */
+  private static boolean sendReady() throws ClosedChannelException {
+    Outbound head;
+    while ((head = ready.peek()) != null) {
+      if (!trySend(head)) {
+        selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return false;
+      }
+      ready.poll();
+    }
+    if (selectionKey.isValid()) {
+      selectionKey.interestOps(SelectionKey.OP_READ);
+    }
+    return true;
+  }
+
+  /** Moves queued datagrams to {@code ready}, coalescing per destination when batching. */
+  private static void collectOutbound() {
+    Outbound next;
+    if (!batching) {
+      while ((next = outbound.poll()) != null) {
+        outboundSize.decrementAndGet();
+        ready.add(next);
+      }
+      return;
+    }
+    Map<DestinationCache.Destination, List<Outbound>> byPeer = new LinkedHashMap<>();
+    while ((next = outbound.poll()) != null) {
+      outboundSize.decrementAndGet();
+      if (next.symbols == null) {
+        ready.add(next);
+      } else {
+        byPeer.computeIfAbsent(next.destination, key -> new ArrayList<>(4)).add(next);
+      }
+    }
+    long now = System.currentTimeMillis();
+    for (Map.Entry<DestinationCache.Destination, List<Outbound>> entry : byPeer.entrySet()) {
+      List<Outbound> frames = entry.getValue();
+      if (frames.size() > 1 && peerMode(entry.getKey(), now) == PeerMode.BATCHING) {
+        coalesce(entry.getKey(), frames);
+      } else {
+        ready.addAll(frames);
+      }
+    }
+  }
+
+  /** Current mode for {@code destination}, sending a HELLO probe when it is unknown or stale. */
+  private static PeerMode peerMode(DestinationCache.Destination destination, long now) {
+    Peer peer;
+    boolean added = false;
+    synchronized (peers) {
+      peer = peers.get(destination.address);
+      if (peer == null) {
+        // Past MAX_TRACKED_PEERS this evicts the least recently consulted peer
+        peer = new Peer();
+        peers.put(destination.address, peer);
+        added = true;
+      }
+    }
+    if (added) {
+      probe(destination, peer, now);
+    } else if (peer.mode == PeerMode.PROBING && now >= peer.until) {
+      peer.mode = PeerMode.LEGACY;
+      peer.until = now + LEGACY_RECHECK_MS;
+    } else if (peer.mode != PeerMode.PROBING && now >= peer.until) {
+      // Batching peers are rechecked too, in case one was replaced by a legacy router
+      probe(destination, peer, now);
+    }
+    return peer.mode;
+  }
+
+  private static void probe(DestinationCache.Destination destination, Peer peer, long now) {
+    peer.probeSentAt.set(0);
+    peer.mode = PeerMode.PROBING;
+    peer.until = now + PROBE_TIMEOUT_MS;
+    Outbound hello =
+        new Outbound(destination, UdpContainer.control(UdpContainer.KIND_HELLO), NO_SOURCES);
+    hello.probe = peer;
+    ready.add(hello);
   }
 
-  // Parses frame from UDP nibbles. Only IPv4 frames are supported over UDP.
-  private static Frame parseFrameFromNibbles(int[] nibbles) {
-    if (nibbles.length < 6) {
-      NetworkCore.LOGGER.warn("UDP payload too short for frame");
-      return null;
+  private static void coalesce(DestinationCache.Destination destination, List<Outbound> frames) {
+    List<Outbound> batch = new ArrayList<>();
+    int size = UdpContainer.HEADER_BYTES;
+    for (Outbound frame : frames) {
+      int entry = UdpContainer.entrySize(frame.symbols);
+      if (!batch.isEmpty()
+          && (size + entry > BATCH_MAX_BYTES || batch.size() == UdpContainer.MAX_FRAMES)) {
+        emitBatch(destination, batch);
+        batch.clear();
+        size = UdpContainer.HEADER_BYTES;
+      }
+      batch.add(frame);
+      size += entry;
     }
-    if (nibbles[0] != 15) {
-      NetworkCore.LOGGER.warn("UDP payload missing SOF nibble");
-      return null;
+    emitBatch(destination, batch);
+  }
+
+  private static void emitBatch(DestinationCache.Destination destination, List<Outbound> batch) {
+    if (batch.size() == 1) {
+      ready.add(batch.get(0));
+      return;
     }
-    if (nibbles[nibbles.length - 1] != 0) {
-      NetworkCore.LOGGER.warn("UDP payload missing EOF nibble");
-      return null;
+    List<PackedNibbles> symbols = new ArrayList<>(batch.size());
+    List<IPv4Frame> sources = new ArrayList<>(batch.size());
+    for (Outbound frame : batch) {
+      symbols.add(frame.symbols);
+      sources.addAll(Arrays.asList(frame.sources));
     }
-    int type = nibbles[1] & 0xF;
-    int code = nibbles[2] & 0xF;
-    int len = (nibbles[3] << 4) | (nibbles[4] & 0xF);
-    if (len != nibbles.length - 6) {
-      NetworkCore.LOGGER.warn(
-          "UDP payload length mismatch (expected {} got {})", len, nibbles.length - 6);
-      return null;
+    ready.add(
+        new Outbound(
+            destination, UdpContainer.encodeBatch(symbols), sources.toArray(new IPv4Frame[0])));
+  }
+
+  /** Wakes the I/O thread once per tick to send what the tick queued (batching mode). */
+  private static void flushTick() {
+    Selector current = selector;
+    if (batching
+        && current != null
+        && !outbound.isEmpty()
+        && wakeupPending.compareAndSet(false, true)) {
+      current.wakeup();
     }
-    int[] args = new int[len];
-    System.arraycopy(nibbles, 5, args, 0, len);
+  }
+
+  /** Returns false if the socket buffer is full and the datagram must be retried. */
+  private static boolean trySend(Outbound datagram) throws ClosedChannelException {
+    InetSocketAddress address = datagram.destination.address;
     try {
-      return switch (type) {
-        case 3 -> IPv4Frame.from(code, args);
-        default -> {
-          NetworkCore.LOGGER.warn("Unsupported frame type {} received over UDP", type);
-          yield null;
-        }
-      };
-    } catch (IllegalArgumentException ex) {
-      NetworkCore.LOGGER.warn("Failed to decode IPv4 frame: {}", ex.getMessage());
-      return null;
+      ByteBuffer buffer = sendBuffer.clear();
+      buffer.put(datagram.data).flip();
+      if (datagram.probe != null) {
+        // Armed before sending, so a reply racing a receive thread still finds it
+        datagram.probe.probeSentAt.set(System.currentTimeMillis());
+      }
+      if (channel.send(buffer, address) == 0) {
+        return false;
+      }
+      if (FrameTrace.wants(null)) {
+        FrameTrace.udp(
+            FrameTrace.Event.UDP_OUT, address, datagram.data.length, datagram.sources.length);
+      }
+    } catch (ClosedChannelException e) {
+      throw e;
+    } catch (IOException | RuntimeException e) {
+      logLoopError("Failed to send UDP packet to " + address, e);
+      for (IPv4Frame source : datagram.sources) {
+        sendHostUnreachable(source);
+      }
+    }
+    return true;
+  }
+
+  private static void sendHostUnreachable(IPv4Frame ipv4Frame) {
+    // Send HOST_UNREACHABLE (Data Control code 0xA) back
+    DataControlFrame errorControl =
+        new DataControlFrame(0xA, encodeIp(ipv4Frame.getDstIp())); // HOST_UNREACHABLE
+    IPv4Frame errorFrame =
+        new IPv4Frame(
+            ipv4Frame.getSrcIp(),
+            ipv4Frame.getSrcUdpPort(),
+            getLocalIpBytes(),
+            udpPort,
+            errorControl);
+    sendUdp(errorFrame.getDstIpBits(), errorFrame.getDstUdpPort(), errorFrame.encode(), null);
+  }
+
+  private static ByteBuffer acquireBuffer() {
+    ByteBuffer buffer = bufferPool.poll();
+    return buffer != null ? buffer : ByteBuffer.allocateDirect(MAX_DATAGRAM_BYTES);
+  }
+
+  private static void releaseBuffer(ByteBuffer buffer) {
+    if (bufferPool.size() < BUFFER_POOL_SIZE) {
+      bufferPool.offer(buffer);
+    }
+  }
+
+  /**
+   * Packed bytes of a frame's wire form (see {@link IPv4Frame#encodeTo}). {@link IPv4Frame#encode}
+   * already produces this layout, so the backing array is handed over without copying.
+   *
+   * @param nibbles sequence of 4-bit values (0-15)
+   * @return byte array with length ⌈nibbles.length() / 2⌉; must not be modified
+   */
+  private static byte[] nibblesToBytes(PackedNibbles nibbles) {
+    return nibbles.packedBytes();
+  }
+
+  /** Queues a datagram for the I/O thread. Safe to call from any thread. */
+  private static void sendUdp(int dstIp, int dstUdpPort, PackedNibbles symbols, IPv4Frame source) {
+    enqueue(new Outbound(destinations.get(dstIp, dstUdpPort), symbols, source));
+  }
+
+  private static void enqueue(Outbound datagram) {
+    if (datagram.data.length > MAX_DATAGRAM_BYTES) {
+      NetworkCore.LOGGER.warn("Dropping oversized UDP packet ({} bytes)", datagram.data.length);
+      return;
+    }
+    if (outboundSize.incrementAndGet() > OUTBOUND_CAPACITY) {
+      outboundSize.decrementAndGet();
+      // Counted for /networkcore stats; a line per drop would flood the log when it matters most
+      long drops = sendQueueDrops.incrementAndGet();
+      if (logDue(lastSendQueueDropLog)) {
+        NetworkCore.LOGGER.warn("UDP send queue full, dropping packets ({} so far)", drops);
+      }
+      return;
+    }
+    outbound.offer(datagram);
+    // In batching mode the end-of-tick flush wakes the I/O thread instead
+    Selector current = selector;
+    if (!batching && current != null && wakeupPending.compareAndSet(false, true)) {
+      current.wakeup();
     }
   }
 
@@ -242,6 +854,31 @@ public class IPv4Router {
     return udpPort;
   }
 
+  /** Datagrams dropped unread because their source went over {@code udp.ingressPerSecond}. */
+  public static long getIngressDrops() {
+    return ingressLimiter.denied();
+  }
+
+  /** Outbound datagrams dropped because the send queue was full. */
+  public static long getSendQueueDrops() {
+    return sendQueueDrops.get();
+  }
+
+  /** Error replies (and their log lines) skipped under {@code udp.errorRepliesPerSecond}. */
+  public static long getErrorRepliesSuppressed() {
+    return errorReplyLimiter.denied();
+  }
+
+  /** Outbound sends whose destination address was already cached. */
+  public static long getDestinationCacheHits() {
+    return destinations.hits();
+  }
+
+  /** Outbound sends that had to build a new destination address. */
+  public static long getDestinationCacheMisses() {
+    return destinations.misses();
+  }
+
   public static byte[] getLocalIp() {
     if (localAddress != null) {
       return localAddress.getAddress();
@@ -268,9 +905,6 @@ public class IPv4Router {
     if (localAddress != null) {
       return localAddress.getAddress();
     }
-    if (socket != null) {
-      return socket.getLocalAddress().getAddress();
-    }
     return new byte[4];
   }
 }
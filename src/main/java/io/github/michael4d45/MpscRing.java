@@ -0,0 +1,62 @@
+package io.github.michael4d45;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producer threads and a single consumer thread.
+ *
+ * <p>Producers claim a sequence number with a CAS on {@code tail} and then publish into that slot;
+ * the consumer treats a still-empty slot as "not yet published" and stops there. A slot is
+ * cleared before {@code head} moves past it, so a producer that observes free capacity always finds
+ * its slot empty.
+ */
+final class MpscRing<E> {
+
+  private final AtomicReferenceArray<E> slots;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private volatile long head; // written by the consumer only
+
+  /** Capacity is rounded up to a power of two. */
+  MpscRing(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /** Any thread. Returns false (and drops nothing already queued) when the ring is full. */
+  boolean offer(E element) {
+    long t;
+    do {
+      t = tail.get();
+      if (t - head > mask) {
+        return false;
+      }
+    } while (!tail.compareAndSet(t, t + 1));
+    slots.lazySet((int) t & mask, element);
+    return true;
+  }
+
+  /** Consumer thread only. Returns null when empty. */
+  E poll() {
+    long h = head;
+    int index = (int) h & mask;
+    E element = slots.get(index);
+    if (element == null) {
+      return null;
+    }
+    slots.lazySet(index, null);
+    head = h + 1;
+    return element;
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /** Approximate number of queued elements. */
+  int size() {
+    return (int) Math.max(0, tail.get() - head);
+  }
+}
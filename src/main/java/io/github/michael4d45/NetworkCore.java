@@ -23,6 +23,7 @@ import net.minecraft.util.math.BlockPos;
 
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +31,7 @@ public class NetworkCore implements ModInitializer {
 
   public static final String MOD_ID = "network-core";
   public static final Logger LOGGER = LoggerFactory.getLogger(MOD_ID);
+  private static final int NEAREST_CORE_SEARCH_RADIUS = 16;
   public static final Block NETWORK_CORE_BLOCK =
       registerBlock(
           "network_core",
@@ -42,8 +44,13 @@ public class NetworkCore implements ModInitializer {
   @Override
   public void onInitialize() {
     LOGGER.info("Initializing NetworkCore mod");
+    NetworkCoreConfig.load();
+    FrameTrace.init();
+    NibbleRle.init();
     DataRouter.init();
     IPv4Router.init();
+    NetworkCoreIndex.init();
+    NetworkCoreScheduler.init();
     // Block entity types
     ModBlockEntities.registerAll();
     // Register the block item
@@ -162,17 +169,38 @@ public class NetworkCore implements ModInitializer {
                           CoreRuntime rt = nearest.getRuntime();
                           String msg =
                               String.format(
-                                  "Stats @ %s:\n txFramesParsed=%d txFramingErrors=%d\n rxFramesEmitted=%d rxOverflowDrops=%d rxQueueDepth=%d errorFlags=0x%X",
+                                  "Stats @ %s:\n txFramesParsed=%d txFramingErrors=%d\n rxFramesEmitted=%d rxOverflowDrops=%d rxQueueDepth=%d errorFlags=0x%X\n udpDestinationHits=%d udpDestinationMisses=%d\n udpIngressDrops=%d udpErrorRepliesSuppressed=%d udpSendQueueDrops=%d\n coresLoaded=%d coresAwake=%d localFramesStaged=%d",
                                   nearest.getPos(),
                                   rt.getTxFramesParsed(),
                                   rt.getTxFramingErrors(),
                                   rt.getRxFramesEmitted(),
                                   rt.getRxOverflowDrops(),
                                   rt.getRxQueueDepth(),
-                                  rt.getErrorFlagsBitfield());
+                                  rt.getErrorFlagsBitfield(),
+                                  IPv4Router.getDestinationCacheHits(),
+                                  IPv4Router.getDestinationCacheMisses(),
+                                  IPv4Router.getIngressDrops(),
+                                  IPv4Router.getErrorRepliesSuppressed(),
+                                  IPv4Router.getSendQueueDrops(),
+                                  NetworkCoreScheduler.loadedCores(source.getWorld()),
+                                  NetworkCoreScheduler.awakeCores(source.getWorld()),
+                                  DataRouter.getStagedFrames());
                           source.sendMessage(Text.literal(msg));
                           return 1;
                         }))
+            .then(
+                CommandManager.literal("trace")
+                    .then(CommandManager.literal("on").executes(context -> setTrace(context, true)))
+                    .then(
+                        CommandManager.literal("off")
+                            .executes(context -> setTrace(context, false))))
+            .then(
+                CommandManager.literal("busmode")
+                    .then(
+                        CommandManager.literal("on").executes(context -> setBusMode(context, true)))
+                    .then(
+                        CommandManager.literal("off")
+                            .executes(context -> setBusMode(context, false))))
             .then(
                 CommandManager.literal("help")
                     .executes(
@@ -186,6 +214,8 @@ public class NetworkCore implements ModInitializer {
                                            /networkcore udpaddress - show UDP address for packets
                                            /networkcore listports - list allocated ports
                                            /networkcore stats - show counters for nearest core
+                                           /networkcore trace <on|off> - log nearest core's frames
+                                           /networkcore busmode <on|off> - two symbols per tick
                                            /networkcore help - show this help"""));
                           return 1;
                         }));
@@ -195,24 +225,52 @@ public class NetworkCore implements ModInitializer {
         CommandManager.literal("nc").redirect(dispatcher.getRoot().getChild("networkcore")));
   }
 
-  private static NetworkCoreEntity findNearestNetworkCore(ServerPlayerEntity player) {
-    BlockPos playerPos = player.getBlockPos();
-    NetworkCoreEntity nearest = null;
-    double minDist = Double.MAX_VALUE;
-    for (int x = -16; x <= 16; x++) {
-      for (int y = -16; y <= 16; y++) {
-        for (int z = -16; z <= 16; z++) {
-          BlockPos pos = playerPos.add(x, y, z);
-          if (player.getWorld().getBlockEntity(pos) instanceof NetworkCoreEntity be) {
-            double dist = playerPos.getSquaredDistance(pos);
-            if (dist < minDist) {
-              minDist = dist;
-              nearest = be;
-            }
-          }
-        }
-      }
+  private static int setTrace(CommandContext<ServerCommandSource> context, boolean on) {
+    ServerCommandSource source = context.getSource();
+    ServerPlayerEntity player = source.getPlayer();
+    if (player == null) {
+      source.sendError(Text.literal("This command can only be run by a player"));
+      return 0;
+    }
+    NetworkCoreEntity nearest = findNearestNetworkCore(player);
+    if (nearest == null) {
+      source.sendError(Text.literal("No NetworkCore block found within 16 blocks"));
+      return 0;
     }
-    return nearest;
+    BlockPos pos = nearest.getPos();
+    nearest.getRuntime().setTraceTag(on ? pos.toShortString() : null);
+    source.sendMessage(
+        Text.literal(
+            (on ? "Tracing" : "Stopped tracing")
+                + " NetworkCore at "
+                + pos
+                + " (logger "
+                + MOD_ID
+                + ".trace)"));
+    return 1;
+  }
+
+  private static int setBusMode(CommandContext<ServerCommandSource> context, boolean on) {
+    ServerCommandSource source = context.getSource();
+    ServerPlayerEntity player = source.getPlayer();
+    if (player == null) {
+      source.sendError(Text.literal("This command can only be run by a player"));
+      return 0;
+    }
+    NetworkCoreEntity nearest = findNearestNetworkCore(player);
+    if (nearest == null) {
+      source.sendError(Text.literal("No NetworkCore block found within 16 blocks"));
+      return 0;
+    }
+    nearest.setBusMode(on);
+    source.sendMessage(
+        Text.literal(
+            "Bus mode " + (on ? "on" : "off") + " for NetworkCore at " + nearest.getPos()));
+    return 1;
+  }
+
+  private static NetworkCoreEntity findNearestNetworkCore(ServerPlayerEntity player) {
+    return NetworkCoreIndex.findNearest(
+        player.getWorld(), player.getBlockPos(), NEAREST_CORE_SEARCH_RADIUS);
   }
 }
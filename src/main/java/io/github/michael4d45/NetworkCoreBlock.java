@@ -134,8 +134,11 @@ public class NetworkCoreBlock extends BlockWithEntity {
       Block sourceBlock,
       @Nullable WireOrientation wireOrientation,
       boolean notify) {
-    updateTransmitPowering(world, pos, state);
-    updateClockPowering(world, pos, state);
+    // A scheduled core samples its inputs once at the end of the tick, however many updates arrive
+    if (!(world.getBlockEntity(pos) instanceof NetworkCoreEntity core)
+        || !core.getRuntime().markInputsDirty()) {
+      updateInputs(world, pos, state);
+    }
     super.neighborUpdate(state, world, pos, sourceBlock, wireOrientation, notify);
   }
 
@@ -158,34 +161,72 @@ public class NetworkCoreBlock extends BlockWithEntity {
 
   /** Set receive power level. */
   public static void setReceivePowering(World world, BlockPos pos, BlockState state, int powering) {
-    boolean changed =
-        updateLevelAndActiveIfNeeded(world, pos, state, RECEIVE_POWERED, RECEIVE_ACTIVE, powering);
-    if (changed) {
+    if (applyReceivePowering(world, pos, state, powering)) {
       world.updateNeighbors(pos, state.getBlock());
     }
   }
 
+  /**
+   * Set receive power level without notifying neighbours; returns true if the state changed. The
+   * caller owes the neighbours an update (see {@link NetworkCoreScheduler}, which batches them).
+   */
+  static boolean applyReceivePowering(World world, BlockPos pos, BlockState state, int powering) {
+    return updateLevelAndActiveIfNeeded(
+        world, pos, state, RECEIVE_POWERED, RECEIVE_ACTIVE, powering);
+  }
+
   public static void updateTransmitPowering(World world, BlockPos pos, BlockState state) {
+    updateLevelAndActiveIfNeeded(
+        world, pos, state, TRANSMIT_POWERED, TRANSMIT_ACTIVE, sampleTransmit(world, pos, state));
+  }
+
+  /**
+   * Re-reads the transmit and clock faces and writes both into the block state with a single
+   * {@code setBlockState}, or none if neither changed.
+   */
+  public static void updateInputs(World world, BlockPos pos, BlockState state) {
+    if (world.isClient) {
+      return;
+    }
+    int transmit = sampleTransmit(world, pos, state);
+    BlockState updated =
+        state
+            .with(TRANSMIT_POWERED, transmit)
+            .with(TRANSMIT_ACTIVE, transmit > 0)
+            .with(CLOCK_ACTIVE, sampleClock(world, pos, state));
+    if (updated != state) {
+      world.setBlockState(pos, updated, Block.NOTIFY_LISTENERS);
+    }
+  }
+
+  /**
+   * Bus-mode second TX symbol: the comparator output of the block on the transmit face, such as
+   * another core's bus output. 0 if that block has none.
+   */
+  static int sampleBus(World world, BlockPos pos, BlockState state) {
+    BlockPos source = pos.offset(state.get(FACING).getOpposite());
+    BlockState sourceState = world.getBlockState(source);
+    if (!sourceState.hasComparatorOutput()) {
+      return 0;
+    }
+    return Math.min(15, sourceState.getComparatorOutput(world, source));
+  }
+
+  private static int sampleTransmit(World world, BlockPos pos, BlockState state) {
     // Direction semantics: FACING points inward (internal orientation).
     // Transmit samples from the opposite face (where redstone signal enters).
     // Receive emits from the opposite face (where signal exits).
     Direction facing = state.get(FACING);
     Direction powerReadDirection = facing.getOpposite();
-    int powering =
-        world.getEmittedRedstonePower(pos.offset(powerReadDirection), powerReadDirection);
-    updateLevelAndActiveIfNeeded(world, pos, state, TRANSMIT_POWERED, TRANSMIT_ACTIVE, powering);
+    return world.getEmittedRedstonePower(pos.offset(powerReadDirection), powerReadDirection);
   }
 
   /**
-   * Updates the CLOCK_ACTIVE property based on redstone power present on any non-transmit /
-   * non-receive side. (Transmit = the side we sample for TX; Receive = the side we emit on.) Any
-   * power >0 on the remaining four sides sets CLOCK_ACTIVE=true. This is edge-detected in the block
-   * entity tick to advance symbol timing only when the clock line toggles.
+   * Clock input: redstone power on any non-transmit / non-receive side. (Transmit = the side we
+   * sample for TX; Receive = the side we emit on.) Any power >0 on the remaining four sides sets
+   * CLOCK_ACTIVE=true, and the scheduler advances the core on every redstone tick it is set.
    */
-  public static void updateClockPowering(World world, BlockPos pos, BlockState state) {
-    if (world.isClient) {
-      return;
-    }
+  private static boolean sampleClock(World world, BlockPos pos, BlockState state) {
     Direction facing = state.get(FACING); // internal orientation
     Direction transmitSampleSide =
         facing.getOpposite(); // currently used for transmit sampling & receive emission
@@ -201,9 +242,7 @@ public class NetworkCoreBlock extends BlockWithEntity {
         break;
       }
     }
-    if (state.get(CLOCK_ACTIVE) != active) {
-      world.setBlockState(pos, state.with(CLOCK_ACTIVE, active), Block.NOTIFY_LISTENERS);
-    }
+    return active;
   }
 
   @Nullable
@@ -215,11 +254,26 @@ public class NetworkCoreBlock extends BlockWithEntity {
   @Override
   public <T extends BlockEntity> BlockEntityTicker<T> getTicker(
       World world, BlockState state, BlockEntityType<T> type) {
-    return validateTicker(type, ModBlockEntities.NETWORK_CORE, NetworkCoreEntity::tick);
+    // Cores are ticked together by NetworkCoreScheduler
+    return null;
   }
 
   @Override
   public boolean emitsRedstonePower(BlockState state) {
     return true;
   }
+
+  @Override
+  protected boolean hasComparatorOutput(BlockState state) {
+    return true;
+  }
+
+  /** In bus mode, the second RX symbol of the last tick; otherwise 0. */
+  @Override
+  protected int getComparatorOutput(BlockState state, World world, BlockPos pos) {
+    if (world.getBlockEntity(pos) instanceof NetworkCoreEntity core) {
+      return core.getRuntime().getLastBusOutput();
+    }
+    return 0;
+  }
 }
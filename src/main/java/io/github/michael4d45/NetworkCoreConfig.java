@@ -0,0 +1,157 @@
+package io.github.michael4d45;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+
+import net.fabricmc.loader.api.FabricLoader;
+
+/**
+ * Server-side tuning options, read once at startup from {@code config/network-core.properties}.
+ * Every option has a default, so the file is optional and may list only the keys being changed.
+ * Invalid values are logged and replaced by the default.
+ */
+public final class NetworkCoreConfig {
+
+  private static final String FILE_NAME = "network-core.properties";
+
+  private static final Properties properties = new Properties();
+
+  private NetworkCoreConfig() {
+    // Utility class: prevent instantiation
+  }
+
+  public static void load() {
+    Path path = FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME);
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (Reader reader = Files.newBufferedReader(path)) {
+      properties.load(reader);
+      NetworkCore.LOGGER.info("Loaded {} option(s) from {}", properties.size(), path);
+    } catch (IOException e) {
+      NetworkCore.LOGGER.error("Failed to read {}, using defaults", path, e);
+    }
+  }
+
+  /** Policy used when a core's desired port is taken ({@code ports.allocationPolicy}). */
+  public static NetworkCorePortState.AllocationPolicy portAllocationPolicy() {
+    return getEnum(
+        "ports.allocationPolicy",
+        NetworkCorePortState.AllocationPolicy.class,
+        NetworkCorePortState.AllocationPolicy.LOWEST_FREE);
+  }
+
+  /** Received UDP frames that may wait for the server thread ({@code udp.inboundQueueCapacity}). */
+  public static int udpInboundQueueCapacity() {
+    return getInt("udp.inboundQueueCapacity", 1024, 16, 1 << 20);
+  }
+
+  /** Received UDP frames delivered per server tick ({@code udp.inboundFramesPerTick}). */
+  public static int udpInboundFramesPerTick() {
+    return getInt("udp.inboundFramesPerTick", 256, 1, 1 << 20);
+  }
+
+  /** Coalesce UDP frames per destination and tick for capable peers ({@code udp.batching}). */
+  public static boolean udpBatching() {
+    return getBoolean("udp.batching", false);
+  }
+
+  /** Sockets / threads receiving UDP on Linux via SO_REUSEPORT ({@code udp.receiveThreads}). */
+  public static int udpReceiveThreads() {
+    return getInt("udp.receiveThreads", 1, 1, 16);
+  }
+
+  /** Outbound UDP destinations kept between sends ({@code udp.destinationCacheSize}). */
+  public static int udpDestinationCacheSize() {
+    return getInt("udp.destinationCacheSize", 256, 1, 65536);
+  }
+
+  /** Datagrams accepted per second per source address ({@code udp.ingressPerSecond}, 0 = off). */
+  public static int udpIngressPerSecond() {
+    return getInt("udp.ingressPerSecond", 5000, 0, 1_000_000);
+  }
+
+  /** Error replies per second per source ({@code udp.errorRepliesPerSecond}, 0 = off). */
+  public static int udpErrorRepliesPerSecond() {
+    return getInt("udp.errorRepliesPerSecond", 20, 0, 1_000_000);
+  }
+
+  /** Threads framing and emitting core symbols each redstone tick ({@code cores.parallelism}). */
+  public static int coreParallelism() {
+    return getInt("cores.parallelism", 1, 1, 64);
+  }
+
+  /** Data frames each core holds waiting for its receive face ({@code cores.rxQueueCapacity}). */
+  public static int rxQueueCapacity() {
+    return getInt("cores.rxQueueCapacity", 64, 1, 255);
+  }
+
+  /**
+   * Local Data frames held for a busy core before senders get BLOCK_BUSY, 0 to answer BLOCK_BUSY
+   * at once ({@code cores.stagingCapacity}).
+   */
+  public static int stagingCapacity() {
+    return getInt("cores.stagingCapacity", 256, 0, 65536);
+  }
+
+  /** Send Data frame payloads run-length coded when shorter ({@code frames.compressData}). */
+  public static boolean compressData() {
+    return getBoolean("frames.compressData", false);
+  }
+
+  /** Log every Nth frame event on the trace logger, 0 for none ({@code trace.sampleEvery}). */
+  public static int traceSampleEvery() {
+    return getInt("trace.sampleEvery", 0, 0, 1_000_000);
+  }
+
+  static int getInt(String key, int defaultValue, int min, int max) {
+    String raw = properties.getProperty(key);
+    if (raw == null) {
+      return defaultValue;
+    }
+    try {
+      int value = Integer.parseInt(raw.trim());
+      if (value >= min && value <= max) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      // fall through to warning
+    }
+    NetworkCore.LOGGER.warn(
+        "Config {}={} is not an integer in [{}, {}], using {}", key, raw, min, max, defaultValue);
+    return defaultValue;
+  }
+
+  static boolean getBoolean(String key, boolean defaultValue) {
+    String raw = properties.getProperty(key);
+    if (raw == null) {
+      return defaultValue;
+    }
+    return switch (raw.trim().toLowerCase(Locale.ROOT)) {
+      case "true", "on", "yes" -> true;
+      case "false", "off", "no" -> false;
+      default -> {
+        NetworkCore.LOGGER.warn("Config {}={} is not a boolean, using {}", key, raw, defaultValue);
+        yield defaultValue;
+      }
+    };
+  }
+
+  static <E extends Enum<E>> E getEnum(String key, Class<E> type, E defaultValue) {
+    String raw = properties.getProperty(key);
+    if (raw == null) {
+      return defaultValue;
+    }
+    try {
+      return Enum.valueOf(type, raw.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      NetworkCore.LOGGER.warn(
+          "Config {}={} is not a valid value, using {}", key, raw, defaultValue);
+      return defaultValue;
+    }
+  }
+}
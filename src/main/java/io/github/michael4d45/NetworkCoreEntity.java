@@ -6,12 +6,12 @@ import net.minecraft.server.world.ServerWorld;
 import net.minecraft.storage.ReadView;
 import net.minecraft.storage.WriteView;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.world.World;
 
 /** Minimal stub block entity. */
 public class NetworkCoreEntity extends BlockEntity {
 
   private static final String PORT_KEY = "Port";
+  private static final String BUS_MODE_KEY = "BusMode";
 
   /** Cached assigned network port (-1 = unassigned). */
   private int port;
@@ -38,23 +38,38 @@ public class NetworkCoreEntity extends BlockEntity {
     int assigned = DataRouter.requestPort(pos, serverWorld, port);
     NetworkCore.LOGGER.debug("Assigned port {} to Network Core at {}", assigned, pos);
     if (this.port != assigned) {
+      DataRouter.unbindLive(this, this.port);
       this.port = assigned;
       markDirty();
     }
+    DataRouter.bindLive(this);
+    runtime.wake();
   }
 
   public CoreRuntime getRuntime() {
     return runtime;
   }
 
+  /** Switches between one symbol per tick (default) and two (see {@link CoreRuntime}). */
+  public void setBusMode(boolean busMode) {
+    if (runtime.isBusMode() != busMode) {
+      runtime.setBusMode(busMode);
+      markDirty();
+    }
+  }
+
   @Override
   protected void readData(ReadView view) {
     int loaded = view.getOptionalInt(PORT_KEY).orElse(-1);
     this.port = Math.max(-1, Math.min(65535, loaded));
+    runtime.setBusMode(view.getBoolean(BUS_MODE_KEY, false));
     // Mark that we need to register this port with the allocator on first tick
     // (when server/world are available)
     if (this.port >= 0) {
       this.needsPortRegistration = true;
+      if (runtime.scheduler != null) {
+        runtime.scheduler.queueRegistration(this);
+      }
     }
   }
 
@@ -63,50 +78,33 @@ public class NetworkCoreEntity extends BlockEntity {
     if (port >= 0) {
       view.putInt(PORT_KEY, port);
     }
-  }
-
-  public static void tick(World world, BlockPos pos, BlockState state, NetworkCoreEntity be) {
-    if (!(world instanceof ServerWorld serverWorld)) {
-      return;
+    if (runtime.isBusMode()) {
+      view.putBoolean(BUS_MODE_KEY, true);
     }
+  }
 
-    // Handle port registration after load, before any other processing
-    if (be.needsPortRegistration) {
-      be.needsPortRegistration = false;
-      int reconciledPort = DataRouter.registerExisting(pos, serverWorld, be.port);
-      if (reconciledPort != be.port) {
-        NetworkCore.LOGGER.info(
-            "Port conflict during load: requested {} but assigned {} at {}",
-            be.port,
-            reconciledPort,
-            pos);
-        be.port = reconciledPort;
-        be.markDirty();
-      }
-    }
+  boolean needsPortRegistration() {
+    return needsPortRegistration;
+  }
 
-    // Skip ticking when:
-    // 1. Odd ticks (redstone ticks are every 2 game ticks)
-    // 2. Singleplayer pause menu is open (integrated server paused)
-    // 3. Global tick freeze is active (/tick freeze)
-    var server = serverWorld.getServer();
-    var tickManager = server.getTickManager();
-    if (world.getTime() % 2 != 0
-        || server.isPaused()
-        || (tickManager.isFrozen() && !tickManager.shouldTick())) {
+  /** Claims the port read from disk once the port table is available (see readData). */
+  void registerLoadedPort(ServerWorld world) {
+    if (!needsPortRegistration) {
       return;
     }
-
-    // Clock gating: only advance tickCounter when CLOCK_ACTIVE is true (level-triggered).
-    if (!state.getOrEmpty(NetworkCoreBlock.CLOCK_ACTIVE).orElse(false)) {
-      return;
+    needsPortRegistration = false;
+    int reconciledPort = DataRouter.registerExisting(pos, world, port);
+    if (reconciledPort != port) {
+      NetworkCore.LOGGER.info(
+          "Port conflict during load: requested {} but assigned {} at {}",
+          port,
+          reconciledPort,
+          pos);
+      port = reconciledPort;
+      markDirty();
     }
-
-    int transmitPower = state.get(NetworkCoreBlock.TRANSMIT_POWERED);
-    be.runtime.processTxSymbol(be, transmitPower);
-    be.runtime.processRxOutput();
-    int receivePower = be.runtime.getLastOutputPower();
-    NetworkCoreBlock.setReceivePowering(serverWorld, pos, state, receivePower);
+    DataRouter.bindLive(this);
+    runtime.wake();
   }
 
   public boolean sendFrame(Frame frame) {
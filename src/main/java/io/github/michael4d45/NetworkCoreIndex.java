@@ -0,0 +1,138 @@
+package io.github.michael4d45;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerBlockEntityEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Live per-dimension index of loaded {@link NetworkCoreEntity} instances, bucketed by chunk section.
+ * Kept current by block entity load / unload events so that proximity queries only visit the few
+ * sections in range instead of probing every block position. Server thread only.
+ */
+public final class NetworkCoreIndex {
+
+  private static final Map<RegistryKey<World>, Long2ObjectOpenHashMap<List<NetworkCoreEntity>>>
+      sections = new HashMap<>();
+
+  private NetworkCoreIndex() {
+    // Utility class: prevent instantiation
+  }
+
+  public static void init() {
+    ServerBlockEntityEvents.BLOCK_ENTITY_LOAD.register(
+        (blockEntity, world) -> {
+          if (blockEntity instanceof NetworkCoreEntity core) {
+            add(world.getRegistryKey(), core);
+          }
+        });
+    ServerBlockEntityEvents.BLOCK_ENTITY_UNLOAD.register(
+        (blockEntity, world) -> {
+          if (blockEntity instanceof NetworkCoreEntity core) {
+            remove(world.getRegistryKey(), core);
+          }
+        });
+    ServerLifecycleEvents.SERVER_STOPPING.register(mcServer -> sections.clear());
+  }
+
+  static void add(RegistryKey<World> dimension, NetworkCoreEntity core) {
+    List<NetworkCoreEntity> bucket =
+        sections
+            .computeIfAbsent(dimension, key -> new Long2ObjectOpenHashMap<>())
+            .computeIfAbsent(sectionKey(core.getPos()), key -> new ArrayList<>(2));
+    if (!bucket.contains(core)) {
+      bucket.add(core);
+    }
+  }
+
+  static void remove(RegistryKey<World> dimension, NetworkCoreEntity core) {
+    Long2ObjectOpenHashMap<List<NetworkCoreEntity>> byDimension = sections.get(dimension);
+    if (byDimension == null) {
+      return;
+    }
+    long key = sectionKey(core.getPos());
+    List<NetworkCoreEntity> bucket = byDimension.get(key);
+    if (bucket != null && bucket.remove(core) && bucket.isEmpty()) {
+      byDimension.remove(key);
+    }
+  }
+
+  /**
+   * Returns the core closest to {@code center} (squared Euclidean distance) whose position lies in
+   * the cube of half-size {@code radius} around it, or {@code null} when there is none.
+   */
+  public static NetworkCoreEntity findNearest(World world, BlockPos center, int radius) {
+    NetworkCoreEntity nearest = null;
+    double minDist = Double.MAX_VALUE;
+    for (NetworkCoreEntity core : findWithin(world, center, radius)) {
+      double dist = center.getSquaredDistance(core.getPos());
+      if (dist < minDist) {
+        minDist = dist;
+        nearest = core;
+      }
+    }
+    return nearest;
+  }
+
+  /** Returns every loaded core within the cube of half-size {@code radius} around the center. */
+  public static List<NetworkCoreEntity> findWithin(World world, BlockPos center, int radius) {
+    List<NetworkCoreEntity> result = new ArrayList<>();
+    Long2ObjectOpenHashMap<List<NetworkCoreEntity>> byDimension =
+        sections.get(world.getRegistryKey());
+    if (byDimension == null || byDimension.isEmpty()) {
+      return result;
+    }
+    int minX = center.getX() - radius;
+    int minY = center.getY() - radius;
+    int minZ = center.getZ() - radius;
+    int maxX = center.getX() + radius;
+    int maxY = center.getY() + radius;
+    int maxZ = center.getZ() + radius;
+    for (int sx = ChunkSectionPos.getSectionCoord(minX);
+        sx <= ChunkSectionPos.getSectionCoord(maxX);
+        sx++) {
+      for (int sy = ChunkSectionPos.getSectionCoord(minY);
+          sy <= ChunkSectionPos.getSectionCoord(maxY);
+          sy++) {
+        for (int sz = ChunkSectionPos.getSectionCoord(minZ);
+            sz <= ChunkSectionPos.getSectionCoord(maxZ);
+            sz++) {
+          List<NetworkCoreEntity> bucket = byDimension.get(ChunkSectionPos.asLong(sx, sy, sz));
+          if (bucket == null) {
+            continue;
+          }
+          for (NetworkCoreEntity core : bucket) {
+            BlockPos pos = core.getPos();
+            if (!core.isRemoved()
+                && pos.getX() >= minX
+                && pos.getX() <= maxX
+                && pos.getY() >= minY
+                && pos.getY() <= maxY
+                && pos.getZ() >= minZ
+                && pos.getZ() <= maxZ) {
+              result.add(core);
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static long sectionKey(BlockPos pos) {
+    return ChunkSectionPos.asLong(
+        ChunkSectionPos.getSectionCoord(pos.getX()),
+        ChunkSectionPos.getSectionCoord(pos.getY()),
+        ChunkSectionPos.getSectionCoord(pos.getZ()));
+  }
+}
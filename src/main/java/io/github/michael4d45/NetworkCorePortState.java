@@ -2,6 +2,7 @@ package io.github.michael4d45;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtList;
@@ -15,8 +16,23 @@ import net.minecraft.world.World;
  * Persistent state for network core port allocations. Ports are world-agnostic (apply to entire
  * Minecraft instance, not per-world). Each allocation stores both BlockPos and dimension ID to
  * disambiguate identical coordinates across dimensions (Overworld/Nether/End).
+ *
+ * <p>Port lookups ({@link #getAllocationByPort}) are wait-free volatile reads of {@code byPort}
+ * and may run on any thread. Mutations ({@link #claim}, {@link #reassign}, {@link #release}) and
+ * everything touching {@code byPos} serialize on this instance.
  */
 public class NetworkCorePortState {
+
+  /** How a fallback port is chosen when the desired one is taken. */
+  public enum AllocationPolicy {
+    /** Lowest free port (historical behaviour). */
+    LOWEST_FREE,
+    /** First free port after the one handed out last, wrapping around. */
+    ROUND_ROBIN,
+    /** First free port at or after a hash of the block position, wrapping around. */
+    HASHED
+  }
+
   // Allocation entry combining position and dimension
   public static class PortAllocation {
     final BlockPos pos;
@@ -40,11 +56,53 @@ public class NetworkCorePortState {
     }
   }
 
-  final PortAllocation[] byPort = new PortAllocation[65536]; // index 0..65535
+  /** Observer of port table changes, invoked while the state lock is held. */
+  public interface ChangeListener {
+    void onAssigned(int port, PortAllocation allocation);
+
+    void onReleased(int port);
+  }
+
+  /** Immutable copy of the assigned ports, in ascending port order. */
+  public static final class Snapshot {
+    final int[] ports;
+    final PortAllocation[] allocations;
+
+    Snapshot(int[] ports, PortAllocation[] allocations) {
+      this.ports = ports;
+      this.allocations = allocations;
+    }
+
+    public int size() {
+      return ports.length;
+    }
+  }
+
+  final AtomicReferenceArray<PortAllocation> byPort =
+      new AtomicReferenceArray<>(65536); // index 0..65535
   final Map<PortAllocation, Integer> byPos = new HashMap<>();
 
+  // Occupancy bitmap mirroring byPort (bit set = port in use), scanned a word at a time.
+  private final long[] usedPorts = new long[65536 / Long.SIZE];
+  // No port below this index is free.
+  private int lowestFreeHint = 0;
+  // Next starting point for ROUND_ROBIN.
+  private int roundRobinCursor = 0;
+  private AllocationPolicy policy = AllocationPolicy.LOWEST_FREE;
+  private int assignedCount = 0;
+  private ChangeListener listener;
+
   public NetworkCorePortState() {}
 
+  public synchronized void setChangeListener(ChangeListener listener) {
+    this.listener = listener;
+  }
+
+  public synchronized void setAllocationPolicy(AllocationPolicy policy) {
+    this.policy = policy;
+  }
+
+  /** Reads the NBT format used before {@link PortStateFile}; kept for migration. */
   public static NetworkCorePortState fromNbt(NbtCompound nbt) {
     NetworkCorePortState state = new NetworkCorePortState();
     NbtList list = nbt.getList("Ports").orElse(new NbtList());
@@ -63,7 +121,7 @@ public class NetworkCorePortState {
           String dimStr = c.getString("Dimension").orElse("minecraft:overworld");
           RegistryKey<World> dimension = RegistryKey.of(RegistryKeys.WORLD, Identifier.of(dimStr));
           PortAllocation alloc = new PortAllocation(pos, dimension);
-          state.byPort[port] = alloc;
+          state.occupy(port, alloc);
           state.byPos.put(alloc, port);
         }
       }
@@ -71,23 +129,56 @@ public class NetworkCorePortState {
     return state;
   }
 
-  public NbtCompound writeNbt() {
-    NbtList list = new NbtList();
-    for (int i = 0; i < byPort.length; i++) {
-      PortAllocation alloc = byPort[i];
-      if (alloc != null) {
-        NbtCompound c = new NbtCompound();
-        c.putInt("Port", i);
-        c.putInt("X", alloc.pos.getX());
-        c.putInt("Y", alloc.pos.getY());
-        c.putInt("Z", alloc.pos.getZ());
-        c.putString("Dimension", alloc.dimension.getValue().toString());
-        list.add(c);
+  /** Rebuilds a state from a snapshot (see {@link PortStateFile}). */
+  static NetworkCorePortState fromSnapshot(Snapshot snapshot) {
+    NetworkCorePortState state = new NetworkCorePortState();
+    for (int i = 0; i < snapshot.ports.length; i++) {
+      PortAllocation alloc = snapshot.allocations[i];
+      state.occupy(snapshot.ports[i], alloc);
+      state.byPos.put(alloc, snapshot.ports[i]);
+    }
+    return state;
+  }
+
+  /** Copies the assigned ports by walking the occupancy bitmap (cost scales with ports in use). */
+  public synchronized Snapshot snapshot() {
+    int[] ports = new int[assignedCount];
+    PortAllocation[] allocations = new PortAllocation[assignedCount];
+    int n = 0;
+    for (int word = 0; word < usedPorts.length; word++) {
+      long bits = usedPorts[word];
+      while (bits != 0) {
+        int port = (word << 6) + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+        ports[n] = port;
+        allocations[n] = byPort.get(port);
+        n++;
       }
     }
-    NbtCompound nbt = new NbtCompound();
-    nbt.put("Ports", list);
-    return nbt;
+    return new Snapshot(ports, allocations);
+  }
+
+  /** Replays a journaled assignment: {@code port} is owned by {@code allocation} afterwards. */
+  synchronized void applyAssigned(int port, PortAllocation allocation) {
+    PortAllocation previousOwner = byPort.get(port);
+    if (previousOwner != null && !previousOwner.equals(allocation)) {
+      byPos.remove(previousOwner);
+    }
+    Integer previousPort = byPos.get(allocation);
+    if (previousPort != null && previousPort >= 0 && previousPort != port) {
+      vacate(previousPort);
+    }
+    occupy(port, allocation);
+    byPos.put(allocation, port);
+  }
+
+  /** Replays a journaled release: {@code port} is free afterwards. */
+  synchronized void applyReleased(int port) {
+    PortAllocation owner = byPort.get(port);
+    if (owner != null) {
+      byPos.remove(owner);
+      vacate(port);
+    }
   }
 
   public synchronized int claim(BlockPos pos, RegistryKey<World> dimension, int desiredPort) {
@@ -98,17 +189,17 @@ public class NetworkCorePortState {
     }
     int candidate = clamp(desiredPort);
     if (candidate >= 0) {
-      PortAllocation owner = byPort[candidate];
+      PortAllocation owner = byPort.get(candidate);
       if (owner == null || owner.equals(key)) {
-        byPort[candidate] = key;
+        occupy(candidate, key);
         byPos.put(key, candidate);
         return candidate;
       }
     }
-    int fallback = findAvailablePort();
+    int fallback = findAvailablePort(key);
     int assigned = fallback != -1 ? fallback : -1;
     if (assigned >= 0) {
-      byPort[assigned] = key;
+      occupy(assigned, key);
       byPos.put(key, assigned);
     } else {
       byPos.put(key, -1);
@@ -126,15 +217,15 @@ public class NetworkCorePortState {
     int candidate = clamp(desiredPort);
     if (candidate < 0) {
       if (current >= 0) {
-        byPort[current] = null;
+        vacate(current);
       }
       byPos.put(key, -1);
       return -1;
     }
-    PortAllocation owner = byPort[candidate];
+    PortAllocation owner = byPort.get(candidate);
     int newPort = candidate;
     if (owner != null && !owner.equals(key)) {
-      int fallback = findAvailablePort();
+      int fallback = findAvailablePort(key);
       if (fallback == -1) {
         return current;
       }
@@ -150,38 +241,108 @@ public class NetworkCorePortState {
       return current;
     }
     if (current >= 0) {
-      byPort[current] = null;
+      vacate(current);
     }
-    byPort[newPort] = key;
+    occupy(newPort, key);
     byPos.put(key, newPort);
     return newPort;
   }
 
-  public synchronized void release(BlockPos pos, RegistryKey<World> dimension) {
+  /** Releases the allocation at {@code pos}, returning the freed port or -1 if none was held. */
+  public synchronized int release(BlockPos pos, RegistryKey<World> dimension) {
     PortAllocation key = new PortAllocation(pos, dimension);
     Integer current = byPos.remove(key);
     if (current != null && current >= 0) {
-      PortAllocation owner = byPort[current];
+      PortAllocation owner = byPort.get(current);
       if (owner != null && owner.equals(key)) {
-        byPort[current] = null;
+        vacate(current);
+        return current;
       }
     }
+    return -1;
   }
 
-  public synchronized PortAllocation getAllocationByPort(int port) {
+  public PortAllocation getAllocationByPort(int port) {
     if (port < 0 || port > 65535) {
       return null;
     }
-    return byPort[port];
+    return byPort.get(port);
+  }
+
+  /** Copy of the position → port map, safe to iterate while other threads allocate. */
+  public synchronized Map<PortAllocation, Integer> snapshotByPos() {
+    return new HashMap<>(byPos);
+  }
+
+  public synchronized int size() {
+    return byPos.size();
+  }
+
+  private void occupy(int port, PortAllocation key) {
+    if (byPort.getAndSet(port, key) == null) {
+      assignedCount++;
+    }
+    usedPorts[port >>> 6] |= 1L << port;
+    if (listener != null) {
+      listener.onAssigned(port, key);
+    }
+  }
+
+  private void vacate(int port) {
+    if (byPort.getAndSet(port, null) != null) {
+      assignedCount--;
+    }
+    usedPorts[port >>> 6] &= ~(1L << port);
+    if (port < lowestFreeHint) {
+      lowestFreeHint = port;
+    }
+    if (listener != null) {
+      listener.onReleased(port);
+    }
   }
 
-  private int findAvailablePort() {
-    for (int port = 0; port <= 65535; port++) {
-      if (byPort[port] == null) {
+  private int findAvailablePort(PortAllocation key) {
+    switch (policy) {
+      case ROUND_ROBIN -> {
+        int port = nextFreePort(roundRobinCursor);
+        if (port == -1) {
+          port = nextFreePort(0);
+        }
+        roundRobinCursor = (port + 1) & 0xFFFF;
+        return port;
+      }
+      case HASHED -> {
+        int start = (int) (mix(key.pos.asLong()) ^ key.dimension.getValue().hashCode()) & 0xFFFF;
+        int port = nextFreePort(start);
+        return port != -1 ? port : nextFreePort(0);
+      }
+      default -> {
+        int port = nextFreePort(lowestFreeHint);
+        lowestFreeHint = (port == -1) ? usedPorts.length * Long.SIZE : port;
         return port;
       }
     }
-    return -1;
+  }
+
+  /** Returns the first unused port at or after {@code from}, or -1 if there is none. */
+  private int nextFreePort(int from) {
+    int wordIndex = from >>> 6;
+    if (wordIndex >= usedPorts.length) {
+      return -1;
+    }
+    long free = ~usedPorts[wordIndex] & (-1L << from);
+    while (free == 0) {
+      if (++wordIndex == usedPorts.length) {
+        return -1;
+      }
+      free = ~usedPorts[wordIndex];
+    }
+    return (wordIndex << 6) + Long.numberOfTrailingZeros(free);
+  }
+
+  private static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+    return value ^ (value >>> 33);
   }
 
   private static int clamp(int port) {
@@ -0,0 +1,494 @@
+package io.github.michael4d45;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerBlockEntityEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.World;
+import net.minecraft.world.block.NeighborUpdater;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+
+/**
+ * Ticks every loaded {@link NetworkCoreEntity} of one world from dense, slot-indexed arrays, once
+ * per redstone tick at the end of the world tick. Replaces the per-block-entity ticker.
+ *
+ * <p>Each loaded core owns a slot; its {@link CoreRuntime} keeps the slot as its handle, and
+ * unloading swaps the last slot into the gap so the arrays stay dense. The hot per-tick fields
+ * (runtime reference, receive power last driven onto the world, awake bit) live in parallel arrays
+ * rather than behind the block entity, and only slots whose awake bit is set are visited, so a
+ * sleeping core costs nothing.
+ *
+ * <p>A redstone tick runs in four phases over the awake cores with a high clock: every core frames
+ * its TX symbol, then the committed frames are routed in slot order, then every core emits its RX
+ * symbol, then receive power is driven onto the world. A core in bus mode handles a second symbol
+ * in each direction, read from and shown to comparators. Framing and emission only touch the core's
+ * own runtime, so with {@code cores.parallelism} above 1 they are split across a fork-join pool;
+ * everything that reaches other cores or the world stays on the server thread, in the same order,
+ * so the redstone output is identical either way.
+ */
+public final class NetworkCoreScheduler {
+
+  // Below this many active cores a phase runs on the server thread; forking would cost more
+  private static final int PARALLEL_MIN_CORES = 256;
+  private static final int PARALLEL_BATCH = 64;
+
+  private static final Map<RegistryKey<World>, NetworkCoreScheduler> byWorld = new HashMap<>();
+  // Shared by all worlds; null unless cores.parallelism > 1
+  private static ForkJoinPool workers;
+
+  private NetworkCoreEntity[] cores = new NetworkCoreEntity[16];
+  private CoreRuntime[] runtimes = new CoreRuntime[16];
+  private byte[] outputPower = new byte[16];
+  // Bus output comparators last saw, per slot
+  private byte[] busPower = new byte[16];
+  // Bit per slot: set = tick this core, clear = asleep until CoreRuntime.wake()
+  private long[] awake = new long[1];
+  // Bit per slot: a neighbor update arrived since the inputs were last sampled
+  private long[] inputsDirty = new long[1];
+  private int size = 0;
+
+  // Cores loaded before the port table was, registered on the next tick; insertion-ordered
+  private final Set<NetworkCoreEntity> pendingRegistration = new LinkedHashSet<>();
+  // Slots unloaded while ticking; compacted once the loop is done
+  private final List<Integer> pendingRemoval = new ArrayList<>();
+  private boolean ticking = false;
+
+  // This tick's work list, indexed by position rather than slot
+  private int[] active = new int[16];
+  private byte[] activeTransmit = new byte[16];
+  private byte[] activeBus = new byte[16];
+  private Frame[] committed = new Frame[16];
+  private int activeCount = 0;
+  // Awake bits as of collectActive, to spot cores woken later in the tick
+  private long[] scheduled = new long[1];
+  // Cores whose receive power changed this tick, and the neighbours that still have to hear of it
+  private final LongArrayList powerChanged = new LongArrayList();
+  private final LongArrayList busChanged = new LongArrayList();
+  private final LongLinkedOpenHashSet neighborsToUpdate = new LongLinkedOpenHashSet();
+
+  private NetworkCoreScheduler() {}
+
+  public static void init() {
+    ServerBlockEntityEvents.BLOCK_ENTITY_LOAD.register(
+        (blockEntity, world) -> {
+          if (blockEntity instanceof NetworkCoreEntity core) {
+            byWorld
+                .computeIfAbsent(world.getRegistryKey(), key -> new NetworkCoreScheduler())
+                .add(core);
+          }
+        });
+    ServerBlockEntityEvents.BLOCK_ENTITY_UNLOAD.register(
+        (blockEntity, world) -> {
+          if (blockEntity instanceof NetworkCoreEntity core) {
+            NetworkCoreScheduler scheduler = byWorld.get(world.getRegistryKey());
+            if (scheduler != null) {
+              scheduler.remove(core);
+            }
+          }
+        });
+    ServerTickEvents.END_WORLD_TICK.register(
+        world -> {
+          NetworkCoreScheduler scheduler = byWorld.get(world.getRegistryKey());
+          if (scheduler != null) {
+            scheduler.tick(world);
+          }
+        });
+    ServerLifecycleEvents.SERVER_STARTED.register(
+        mcServer -> {
+          int parallelism = NetworkCoreConfig.coreParallelism();
+          if (parallelism > 1) {
+            workers =
+                new ForkJoinPool(
+                    parallelism,
+                    pool -> {
+                      ForkJoinWorkerThread thread =
+                          ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                      thread.setName("NetworkCore-Worker-" + thread.getPoolIndex());
+                      return thread;
+                    },
+                    null,
+                    false);
+          }
+        });
+    ServerLifecycleEvents.SERVER_STOPPING.register(
+        mcServer -> {
+          byWorld.clear();
+          if (workers != null) {
+            workers.shutdown();
+            workers = null;
+          }
+        });
+  }
+
+  /** Number of cores loaded in {@code world}. */
+  public static int loadedCores(World world) {
+    NetworkCoreScheduler scheduler = byWorld.get(world.getRegistryKey());
+    return scheduler == null ? 0 : scheduler.size;
+  }
+
+  /** Number of cores in {@code world} that will be ticked. */
+  public static int awakeCores(World world) {
+    NetworkCoreScheduler scheduler = byWorld.get(world.getRegistryKey());
+    if (scheduler == null) {
+      return 0;
+    }
+    int count = 0;
+    for (long word : scheduler.awake) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  void add(NetworkCoreEntity core) {
+    CoreRuntime runtime = core.getRuntime();
+    if (runtime.scheduler != null) {
+      return;
+    }
+    if (size == cores.length) {
+      int capacity = size * 2;
+      cores = Arrays.copyOf(cores, capacity);
+      runtimes = Arrays.copyOf(runtimes, capacity);
+      outputPower = Arrays.copyOf(outputPower, capacity);
+      busPower = Arrays.copyOf(busPower, capacity);
+    }
+    if ((size >>> 6) == awake.length) {
+      awake = Arrays.copyOf(awake, awake.length * 2);
+      inputsDirty = Arrays.copyOf(inputsDirty, inputsDirty.length * 2);
+    }
+    int power = core.getCachedState().getOrEmpty(NetworkCoreBlock.RECEIVE_POWERED).orElse(0);
+    int slot = size++;
+    cores[slot] = core;
+    runtimes[slot] = runtime;
+    outputPower[slot] = (byte) power;
+    busPower[slot] = (byte) runtime.getLastBusOutput();
+    runtime.scheduler = this;
+    runtime.slot = slot;
+    wake(slot);
+    if (core.needsPortRegistration()) {
+      queueRegistration(core);
+    }
+  }
+
+  void queueRegistration(NetworkCoreEntity core) {
+    pendingRegistration.add(core);
+  }
+
+  void remove(NetworkCoreEntity core) {
+    CoreRuntime runtime = core.getRuntime();
+    if (runtime.scheduler != this) {
+      return;
+    }
+    int slot = runtime.slot;
+    runtime.scheduler = null;
+    runtime.slot = -1;
+    sleep(slot);
+    inputsDirty[slot >>> 6] &= ~(1L << slot);
+    cores[slot] = null;
+    if (ticking) {
+      pendingRemoval.add(slot);
+    } else {
+      compact(slot);
+    }
+  }
+
+  void wake(int slot) {
+    awake[slot >>> 6] |= 1L << slot;
+  }
+
+  void markInputsDirty(int slot) {
+    inputsDirty[slot >>> 6] |= 1L << slot;
+    wake(slot);
+  }
+
+  private void sleep(int slot) {
+    awake[slot >>> 6] &= ~(1L << slot);
+  }
+
+  // Moves the last slot into the emptied one
+  private void compact(int slot) {
+    int last = --size;
+    if (slot != last) {
+      cores[slot] = cores[last];
+      runtimes[slot] = runtimes[last];
+      outputPower[slot] = outputPower[last];
+      busPower[slot] = busPower[last];
+      runtimes[slot].slot = slot;
+      if ((awake[last >>> 6] & 1L << last) != 0) {
+        wake(slot);
+      }
+      if ((inputsDirty[last >>> 6] & 1L << last) != 0) {
+        inputsDirty[slot >>> 6] |= 1L << slot;
+      }
+      sleep(last);
+      inputsDirty[last >>> 6] &= ~(1L << last);
+    }
+    cores[last] = null;
+    runtimes[last] = null;
+  }
+
+  private void tick(ServerWorld world) {
+    if (!pendingRegistration.isEmpty() && DataRouter.server != null) {
+      for (NetworkCoreEntity core : pendingRegistration) {
+        if (core.getRuntime().scheduler == this) {
+          core.registerLoadedPort(world);
+        }
+      }
+      pendingRegistration.clear();
+    }
+    // Every game tick, so the block state (and its texture) follows the inputs between redstone
+    // ticks too
+    sampleInputs(world);
+
+    // Skip ticking when:
+    // 1. Odd ticks (redstone ticks are every 2 game ticks)
+    // 2. Singleplayer pause menu is open (integrated server paused)
+    // 3. Global tick freeze is active (/tick freeze)
+    var server = world.getServer();
+    var tickManager = server.getTickManager();
+    if (world.getTime() % 2 != 0
+        || server.isPaused()
+        || (tickManager.isFrozen() && !tickManager.shouldTick())) {
+      return;
+    }
+
+    ticking = true;
+    try {
+      collectActive(world);
+      // 1. Framing: every active core consumes its TX symbol (parallel-safe)
+      runPhase(false);
+      // 2. Routing: committed frames in work-list order, on this thread
+      for (int i = 0; i < activeCount; i++) {
+        Frame frame = committed[i];
+        if (frame != null) {
+          committed[i] = null;
+          int slot = active[i];
+          if (cores[slot] != null) {
+            runtimes[slot].dispatch(cores[slot], frame);
+          }
+        }
+      }
+      // Cores woken by routing emit this tick too, so the result does not depend on slot order
+      collectWoken(world);
+      // 3. Emission: every active core picks its RX symbol (parallel-safe)
+      runPhase(true);
+      // 4. Output: set receive power and put idle cores to sleep, in work-list order. Neighbours
+      // are told afterwards, so none of them sees half of this tick's output.
+      for (int i = 0; i < activeCount; i++) {
+        int slot = active[i];
+        NetworkCoreEntity core = cores[slot];
+        if (core == null) {
+          continue;
+        }
+        CoreRuntime runtime = runtimes[slot];
+        int receivePower = runtime.getLastOutputPower();
+        if (receivePower != outputPower[slot]) {
+          outputPower[slot] = (byte) receivePower;
+          if (NetworkCoreBlock.applyReceivePowering(
+              world, core.getPos(), core.getCachedState(), receivePower)) {
+            powerChanged.add(core.getPos().asLong());
+          }
+        }
+        int busOutput = runtime.getLastBusOutput();
+        if (busOutput != busPower[slot]) {
+          busPower[slot] = (byte) busOutput;
+          busChanged.add(core.getPos().asLong());
+        }
+        // Nothing wakes a core when its bus input changes, so a bus-mode core stays awake
+        if (activeTransmit[i] == 0 && !runtime.isBusMode() && runtime.isIdle()) {
+          sleep(slot);
+        }
+      }
+      updateNeighbors(world);
+      updateComparators(world);
+    } finally {
+      ticking = false;
+    }
+    if (!pendingRemoval.isEmpty()) {
+      // Highest first, so the slot moved into each gap is never itself pending
+      pendingRemoval.sort(null);
+      for (int i = pendingRemoval.size() - 1; i >= 0; i--) {
+        compact(pendingRemoval.get(i));
+      }
+      pendingRemoval.clear();
+    }
+  }
+
+  // Re-reads the input faces of cores that got neighbor updates since the last sample
+  private void sampleInputs(ServerWorld world) {
+    int words = (size + 63) >>> 6;
+    for (int word = 0; word < words; word++) {
+      long bits = inputsDirty[word];
+      inputsDirty[word] = 0;
+      while (bits != 0) {
+        int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+        NetworkCoreEntity core = cores[slot];
+        if (core != null) {
+          NetworkCoreBlock.updateInputs(world, core.getPos(), core.getCachedState());
+          // Even if it went back to sleep since being marked
+          wake(slot);
+        }
+      }
+    }
+  }
+
+  /**
+   * Notifies the neighbours of every core whose receive power changed, each position once in the
+   * order vanilla would first have reached it. Adjacent cores in a dense array share neighbours,
+   * so this avoids most of the updates one {@code updateNeighbors} per core would send.
+   */
+  private void updateNeighbors(ServerWorld world) {
+    if (powerChanged.isEmpty()) {
+      return;
+    }
+    BlockPos.Mutable neighbor = new BlockPos.Mutable();
+    for (int i = 0; i < powerChanged.size(); i++) {
+      long pos = powerChanged.getLong(i);
+      for (Direction direction : NeighborUpdater.UPDATE_ORDER) {
+        neighborsToUpdate.add(neighbor.set(pos).move(direction).asLong());
+      }
+    }
+    powerChanged.clear();
+    LongIterator it = neighborsToUpdate.iterator();
+    while (it.hasNext()) {
+      world.updateNeighbor(BlockPos.fromLong(it.nextLong()), NetworkCore.NETWORK_CORE_BLOCK, null);
+    }
+    neighborsToUpdate.clear();
+  }
+
+  private void updateComparators(ServerWorld world) {
+    for (int i = 0; i < busChanged.size(); i++) {
+      world.updateComparators(
+          BlockPos.fromLong(busChanged.getLong(i)), NetworkCore.NETWORK_CORE_BLOCK);
+    }
+    busChanged.clear();
+  }
+
+  /**
+   * Builds the work list from the awake cores, in slot order. A core whose clock is low sleeps
+   * instead: only a neighbor update can raise it, and that wakes the core.
+   */
+  private void collectActive(ServerWorld world) {
+    activeCount = 0;
+    int words = (size + 63) >>> 6;
+    if (scheduled.length < words) {
+      scheduled = new long[awake.length];
+    }
+    for (int word = 0; word < words; word++) {
+      long bits = awake[word];
+      while (bits != 0) {
+        int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+        schedule(world, slot);
+      }
+      scheduled[word] = awake[word];
+    }
+  }
+
+  /** Appends cores woken since {@link #collectActive} to the work list. */
+  private void collectWoken(ServerWorld world) {
+    int words = (size + 63) >>> 6;
+    for (int word = 0; word < words; word++) {
+      long bits = awake[word] & ~(word < scheduled.length ? scheduled[word] : 0);
+      while (bits != 0) {
+        int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+        schedule(world, slot);
+      }
+    }
+  }
+
+  private void schedule(ServerWorld world, int slot) {
+    NetworkCoreEntity core = cores[slot];
+    if (core == null) {
+      return;
+    }
+    // Chunk outside the ticking range: skip this tick but stay awake, as a frozen world would
+    if (!world.shouldTickBlockPos(core.getPos())) {
+      return;
+    }
+    BlockState state = core.getCachedState();
+    // Clock gating: only advance when CLOCK_ACTIVE is true (level-triggered).
+    if (!state.getOrEmpty(NetworkCoreBlock.CLOCK_ACTIVE).orElse(false)) {
+      sleep(slot);
+      return;
+    }
+    if (activeCount == active.length) {
+      active = Arrays.copyOf(active, activeCount * 2);
+      activeTransmit = Arrays.copyOf(activeTransmit, activeCount * 2);
+      activeBus = Arrays.copyOf(activeBus, activeCount * 2);
+      committed = Arrays.copyOf(committed, activeCount * 2);
+    }
+    active[activeCount] = slot;
+    activeTransmit[activeCount] = (byte) (int) state.get(NetworkCoreBlock.TRANSMIT_POWERED);
+    // Read at the start of the tick, like the transmit power sampled at the end of the last one
+    activeBus[activeCount] =
+        runtimes[slot].isBusMode()
+            ? (byte) NetworkCoreBlock.sampleBus(world, core.getPos(), state)
+            : 0;
+    activeCount++;
+  }
+
+  private void runPhase(boolean emit) {
+    ForkJoinPool pool = workers;
+    if (pool == null || activeCount < PARALLEL_MIN_CORES) {
+      runRange(0, activeCount, emit);
+    } else {
+      pool.invoke(new Phase(0, activeCount, emit));
+    }
+  }
+
+  // Each index touches only its own core's runtime and its own work-list entry
+  private void runRange(int from, int to, boolean emit) {
+    for (int i = from; i < to; i++) {
+      int slot = active[i];
+      if (!emit) {
+        committed[i] = runtimes[slot].advanceTx(activeTransmit[i], activeBus[i]);
+      } else if (cores[slot] != null) {
+        runtimes[slot].processRxOutput();
+      }
+    }
+  }
+
+  /** Splits one phase of the work list across the worker pool. */
+  private final class Phase extends RecursiveAction {
+    private final int from;
+    private final int to;
+    private final boolean emit;
+
+    Phase(int from, int to, boolean emit) {
+      this.from = from;
+      this.to = to;
+      this.emit = emit;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= PARALLEL_BATCH) {
+        runRange(from, to, emit);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new Phase(from, mid, emit), new Phase(mid, to, emit));
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package io.github.michael4d45;
+
+/**
+ * Run-length coding of Data frame payloads, carried on the wire as Data frames with {@code CODE =
+ * 0x1} (see {@link DataFrame}).
+ *
+ * <p>The encoded form is a sequence of tokens, each starting with a control nibble {@code c}:
+ *
+ * <ul>
+ *   <li>{@code c} in 0–7: a literal, the next {@code c + 1} nibbles copied as is.
+ *   <li>{@code c} in 8–15: a run, one count nibble {@code n} and one value nibble; the value
+ *       repeats {@code ((c - 8) << 4 | n) + 3} times (3–130).
+ * </ul>
+ *
+ * <p>A run therefore costs 3 nibbles however long it is, and incompressible data grows by one
+ * nibble in 8 (one in 4 at worst). Callers only send the encoded form when it is shorter.
+ */
+final class NibbleRle {
+
+  private static final int MAX_LITERAL = 8;
+  private static final int MIN_RUN = 3;
+  private static final int MAX_RUN = (7 << 4 | 0xF) + MIN_RUN;
+
+  // Whether Data frames are sent compressed when that saves nibbles (frames.compressData)
+  private static boolean enabled = false;
+
+  private NibbleRle() {
+    // Utility class: prevent instantiation
+  }
+
+  static void init() {
+    setEnabled(NetworkCoreConfig.compressData());
+  }
+
+  static void setEnabled(boolean enabled) {
+    NibbleRle.enabled = enabled;
+  }
+
+  static boolean isEnabled() {
+    return enabled;
+  }
+
+  static PackedNibbles encode(PackedNibbles raw) {
+    int length = raw.length();
+    // Worst case is a 1-nibble literal before every 3-nibble run: 5 nibbles out per 4 in
+    PackedNibbles.Builder out = new PackedNibbles.Builder(length + length / 4 + 1);
+    int literalStart = 0;
+    int i = 0;
+    while (i < length) {
+      int value = raw.get(i);
+      int run = 1;
+      while (i + run < length && run < MAX_RUN && raw.get(i + run) == value) {
+        run++;
+      }
+      if (run < MIN_RUN) {
+        i += run;
+        continue;
+      }
+      addLiterals(out, raw, literalStart, i);
+      int count = run - MIN_RUN;
+      out.add(0x8 | count >> 4).add(count).add(value);
+      i += run;
+      literalStart = i;
+    }
+    addLiterals(out, raw, literalStart, length);
+    return out.build();
+  }
+
+  private static void addLiterals(PackedNibbles.Builder out, PackedNibbles raw, int from, int to) {
+    while (from < to) {
+      int count = Math.min(MAX_LITERAL, to - from);
+      out.add(count - 1);
+      for (int j = 0; j < count; j++) {
+        out.add(raw.get(from + j));
+      }
+      from += count;
+    }
+  }
+
+  /**
+   * Expands an encoded payload. A 247-nibble input decodes to at most about 10,700 nibbles.
+   *
+   * @throws IllegalArgumentException if the last token is cut short
+   */
+  static PackedNibbles decode(PackedNibbles encoded) {
+    int length = encoded.length();
+    // First pass validates and sizes the output, which the builder needs up front
+    int decodedLength = 0;
+    int i = 0;
+    while (i < length) {
+      int control = encoded.get(i);
+      if (control < 0x8) {
+        decodedLength += control + 1;
+        i += control + 2;
+      } else {
+        decodedLength += runLength(encoded, i);
+        i += 3;
+      }
+    }
+    if (i != length) {
+      throw new IllegalArgumentException("Compressed payload ends inside a token");
+    }
+    PackedNibbles.Builder out = new PackedNibbles.Builder(decodedLength);
+    i = 0;
+    while (i < length) {
+      int control = encoded.get(i);
+      if (control < 0x8) {
+        for (int j = 1; j <= control + 1; j++) {
+          out.add(encoded.get(i + j));
+        }
+        i += control + 2;
+      } else {
+        int value = encoded.get(i + 2);
+        for (int j = runLength(encoded, i); j > 0; j--) {
+          out.add(value);
+        }
+        i += 3;
+      }
+    }
+    return out.build();
+  }
+
+  private static int runLength(PackedNibbles encoded, int token) {
+    if (token + 2 >= encoded.length()) {
+      throw new IllegalArgumentException("Compressed payload ends inside a token");
+    }
+    return ((encoded.get(token) & 0x7) << 4 | encoded.get(token + 1)) + MIN_RUN;
+  }
+}
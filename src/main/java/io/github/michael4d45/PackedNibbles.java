@@ -0,0 +1,228 @@
+package io.github.michael4d45;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable sequence of 4-bit values packed two per byte (high nibble first), which is exactly the
+ * UDP wire layout used by {@link IPv4Router}.
+ *
+ * <p>{@link #slice} returns a read-only view sharing the backing array, so splitting a frame into
+ * header, addressing and payload never copies. Instances are safe to share between frames and
+ * threads.
+ */
+public final class PackedNibbles {
+
+  public static final PackedNibbles EMPTY = new PackedNibbles(new byte[0], 0, 0);
+
+  private final byte[] data;
+  private final int offset; // in nibbles
+  private final int length; // in nibbles
+
+  private PackedNibbles(byte[] data, int offset, int length) {
+    this.data = data;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /** Packs a copy of {@code nibbles}; each value is masked to its low 4 bits. */
+  public static PackedNibbles of(int... nibbles) {
+    if (nibbles == null || nibbles.length == 0) {
+      return EMPTY;
+    }
+    Builder builder = new Builder(nibbles.length);
+    for (int nibble : nibbles) {
+      builder.add(nibble);
+    }
+    return builder.build();
+  }
+
+  /** Packs a copy of {@code count} unpacked nibbles (one per byte) starting at {@code from}. */
+  public static PackedNibbles copyOfUnpacked(byte[] source, int from, int count) {
+    if (count == 0) {
+      return EMPTY;
+    }
+    Builder builder = new Builder(count);
+    for (int i = 0; i < count; i++) {
+      builder.add(source[from + i]);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Wraps already packed bytes without copying. The caller hands over ownership and must not
+   * modify {@code packed} afterwards.
+   */
+  static PackedNibbles wrap(byte[] packed) {
+    return new PackedNibbles(packed, 0, packed.length * 2);
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public boolean isEmpty() {
+    return length == 0;
+  }
+
+  public int get(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Nibble index " + index + " out of bounds " + length);
+    }
+    int abs = offset + index;
+    int b = data[abs >> 1];
+    return ((abs & 1) == 0) ? (b >> 4) & 0xF : b & 0xF;
+  }
+
+  /** Returns a view of nibbles {@code [from, to)} sharing this instance's storage. */
+  public PackedNibbles slice(int from, int to) {
+    if (from < 0 || to > length || from > to) {
+      throw new IndexOutOfBoundsException(
+          "Slice [" + from + ", " + to + ") out of bounds " + length);
+    }
+    if (from == 0 && to == length) {
+      return this;
+    }
+    if (from == to) {
+      return EMPTY;
+    }
+    return new PackedNibbles(data, offset + from, to - from);
+  }
+
+  public int[] toIntArray() {
+    int[] result = new int[length];
+    copyTo(result, 0);
+    return result;
+  }
+
+  public void copyTo(int[] target, int targetOffset) {
+    for (int i = 0; i < length; i++) {
+      target[targetOffset + i] = get(i);
+    }
+  }
+
+  /**
+   * Returns the packed bytes (⌈length / 2⌉ long, odd tails padded with a 0 nibble). This is a fresh
+   * copy; use {@link #asReadOnlyByteBuffer()} to avoid copying.
+   */
+  public byte[] toByteArray() {
+    byte[] shared = packedBytes();
+    return shared == data ? data.clone() : shared;
+  }
+
+  /** Read-only view of the packed bytes; zero-copy whenever this sequence is byte aligned. */
+  public ByteBuffer asReadOnlyByteBuffer() {
+    boolean aligned =
+        (offset & 1) == 0
+            && ((length & 1) == 0 || (data[(offset + length - 1) >> 1] & 0xF) == 0);
+    if (aligned) {
+      return ByteBuffer.wrap(data, offset >> 1, (length + 1) / 2).slice().asReadOnlyBuffer();
+    }
+    return ByteBuffer.wrap(repack()).asReadOnlyBuffer();
+  }
+
+  /**
+   * Packed bytes for wire transmission. Returns the backing array itself when it already holds
+   * exactly this sequence, so callers must treat the result as read-only.
+   */
+  byte[] packedBytes() {
+    int byteLen = (length + 1) / 2;
+    if (offset == 0
+        && data.length == byteLen
+        && ((length & 1) == 0 || (data[byteLen - 1] & 0xF) == 0)) {
+      return data;
+    }
+    return repack();
+  }
+
+  private byte[] repack() {
+    byte[] bytes = new byte[(length + 1) / 2];
+    for (int i = 0; i < length; i++) {
+      int nibble = get(i);
+      bytes[i >> 1] |= (byte) (((i & 1) == 0) ? nibble << 4 : nibble);
+    }
+    return bytes;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (!(obj instanceof PackedNibbles other) || other.length != length) return false;
+    for (int i = 0; i < length; i++) {
+      if (get(i) != other.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 1;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + get(i);
+    }
+    return hash;
+  }
+
+  /** Formats like {@link java.util.Arrays#toString(int[])}. */
+  @Override
+  public String toString() {
+    if (length == 0) {
+      return "[]";
+    }
+    StringBuilder sb = new StringBuilder(length * 3 + 2).append('[');
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(get(i));
+    }
+    return sb.append(']').toString();
+  }
+
+  /** Fixed-capacity builder; the result shares the builder's array, so build only once. */
+  public static final class Builder {
+
+    private final byte[] data;
+    private int length = 0;
+
+    public Builder(int capacity) {
+      this.data = new byte[(capacity + 1) / 2];
+    }
+
+    public Builder add(int nibble) {
+      int n = nibble & 0xF;
+      if ((length & 1) == 0) {
+        data[length >> 1] = (byte) (n << 4);
+      } else {
+        data[length >> 1] |= (byte) n;
+      }
+      length++;
+      return this;
+    }
+
+    public Builder addAll(PackedNibbles nibbles) {
+      for (int i = 0; i < nibbles.length; i++) {
+        add(nibbles.get(i));
+      }
+      return this;
+    }
+
+    /** Appends a 16-bit value as four nibbles, most significant first. */
+    public Builder addPort(int port) {
+      return add(port >> 12).add(port >> 8).add(port >> 4).add(port);
+    }
+
+    /** Appends a 32-bit value as eight nibbles, most significant first. */
+    public Builder addInt(int value) {
+      for (int shift = 28; shift >= 0; shift -= 4) {
+        add(value >>> shift);
+      }
+      return this;
+    }
+
+    public PackedNibbles build() {
+      return length == 0 ? EMPTY : new PackedNibbles(data, 0, length);
+    }
+  }
+}
@@ -0,0 +1,214 @@
+package io.github.michael4d45;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.InvalidIdentifierException;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Compact binary encoding of a {@link NetworkCorePortState.Snapshot}.
+ *
+ * <p>Layout (big-endian, "varint" = unsigned LEB128):
+ *
+ * <pre>
+ *   int     magic 'NCPT'
+ *   byte    version (1)
+ *   varint  dimension count, then per dimension: varint UTF-8 length + bytes
+ *   varint  entry count N
+ *   N varint  port gaps (first port, then port - previous - 1; ports ascend)
+ *   N varint  dimension index
+ *   N long    BlockPos.asLong()
+ *   int     CRC32 of everything above
+ * </pre>
+ *
+ * A typical entry takes 10-11 bytes, and each dimension identifier is parsed once per load rather
+ * than once per entry. Files are read whole into a heap buffer and replaced atomically.
+ */
+final class PortStateFile {
+
+  private static final int MAGIC = 0x4E435054; // "NCPT"
+  private static final byte VERSION = 1;
+
+  private PortStateFile() {
+    // Utility class: prevent instantiation
+  }
+
+  static void write(NetworkCorePortState.Snapshot snapshot, Path path) throws IOException {
+    ByteBuffer buffer = encode(snapshot);
+    Files.createDirectories(path.getParent());
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  static NetworkCorePortState.Snapshot read(Path path) throws IOException {
+    // Not mapped: a live mapping would keep Windows from replacing the file at the next write
+    return decode(ByteBuffer.wrap(Files.readAllBytes(path)));
+  }
+
+  static ByteBuffer encode(NetworkCorePortState.Snapshot snapshot) {
+    int count = snapshot.size();
+    Map<RegistryKey<World>, Integer> dimensionIndex = new HashMap<>();
+    byte[][] dimensionNames = new byte[4][];
+    int[] dimensionOf = new int[count];
+    int namesSize = 0;
+    for (int i = 0; i < count; i++) {
+      RegistryKey<World> dimension = snapshot.allocations[i].dimension;
+      Integer index = dimensionIndex.get(dimension);
+      if (index == null) {
+        index = dimensionIndex.size();
+        dimensionIndex.put(dimension, index);
+        if (index == dimensionNames.length) {
+          dimensionNames = Arrays.copyOf(dimensionNames, index * 2);
+        }
+        byte[] name = dimension.getValue().toString().getBytes(StandardCharsets.UTF_8);
+        dimensionNames[index] = name;
+        namesSize += 5 + name.length;
+      }
+      dimensionOf[i] = index;
+    }
+
+    // Upper bound: header + names + N * (3-byte gap + 5-byte index + 8-byte pos) + CRC
+    ByteBuffer buffer = ByteBuffer.allocate(5 + 5 + namesSize + 5 + count * 16 + 4);
+    buffer.putInt(MAGIC).put(VERSION);
+    putVarInt(buffer, dimensionIndex.size());
+    for (int d = 0; d < dimensionIndex.size(); d++) {
+      putVarInt(buffer, dimensionNames[d].length);
+      buffer.put(dimensionNames[d]);
+    }
+    putVarInt(buffer, count);
+    int previous = -1;
+    for (int i = 0; i < count; i++) {
+      putVarInt(buffer, snapshot.ports[i] - previous - 1);
+      previous = snapshot.ports[i];
+    }
+    for (int i = 0; i < count; i++) {
+      putVarInt(buffer, dimensionOf[i]);
+    }
+    for (int i = 0; i < count; i++) {
+      buffer.putLong(snapshot.allocations[i].pos.asLong());
+    }
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), 0, buffer.position());
+    buffer.putInt((int) crc.getValue());
+    return buffer.flip();
+  }
+
+  static NetworkCorePortState.Snapshot decode(ByteBuffer buffer) throws IOException {
+    try {
+      int start = buffer.position();
+      if (buffer.remaining() < 9 || buffer.getInt() != MAGIC) {
+        throw new IOException("Not a network core port state file");
+      }
+      byte version = buffer.get();
+      if (version != VERSION) {
+        throw new IOException("Unsupported port state file version " + version);
+      }
+      int end = buffer.limit() - 4;
+      CRC32 crc = new CRC32();
+      crc.update(buffer.duplicate().position(start).limit(end));
+      if ((int) crc.getValue() != buffer.getInt(end)) {
+        throw new IOException("Port state file checksum mismatch");
+      }
+      buffer.limit(end);
+
+      int dimensionCount = getVarInt(buffer);
+      if (dimensionCount > buffer.remaining()) {
+        throw new IOException("Port state file lists " + dimensionCount + " dimensions");
+      }
+      @SuppressWarnings("unchecked")
+      RegistryKey<World>[] dimensions = new RegistryKey[dimensionCount];
+      for (int d = 0; d < dimensionCount; d++) {
+        int nameLength = getVarInt(buffer);
+        if (nameLength > buffer.remaining()) {
+          throw new BufferUnderflowException();
+        }
+        byte[] name = new byte[nameLength];
+        buffer.get(name);
+        dimensions[d] =
+            RegistryKey.of(
+                RegistryKeys.WORLD, Identifier.of(new String(name, StandardCharsets.UTF_8)));
+      }
+
+      int count = getVarInt(buffer);
+      if (count > 65536) {
+        throw new IOException("Port state file lists " + count + " entries");
+      }
+      int[] ports = new int[count];
+      int port = -1;
+      for (int i = 0; i < count; i++) {
+        port += getVarInt(buffer) + 1;
+        if (port > 65535) {
+          throw new IOException("Port state file entry " + i + " has port " + port);
+        }
+        ports[i] = port;
+      }
+      int[] dimensionOf = new int[count];
+      for (int i = 0; i < count; i++) {
+        int index = getVarInt(buffer);
+        if (index >= dimensionCount) {
+          throw new IOException("Port state file entry " + i + " has dimension " + index);
+        }
+        dimensionOf[i] = index;
+      }
+      NetworkCorePortState.PortAllocation[] allocations =
+          new NetworkCorePortState.PortAllocation[count];
+      for (int i = 0; i < count; i++) {
+        allocations[i] =
+            new NetworkCorePortState.PortAllocation(
+                BlockPos.fromLong(buffer.getLong()), dimensions[dimensionOf[i]]);
+      }
+      return new NetworkCorePortState.Snapshot(ports, allocations);
+    } catch (BufferUnderflowException | InvalidIdentifierException e) {
+      throw new IOException("Truncated or malformed port state file", e);
+    }
+  }
+
+  private static void putVarInt(ByteBuffer buffer, int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static int getVarInt(ByteBuffer buffer) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        if (value < 0) {
+          throw new IOException("Negative varint in port state file");
+        }
+        return value;
+      }
+    }
+    throw new IOException("Varint too long in port state file");
+  }
+}
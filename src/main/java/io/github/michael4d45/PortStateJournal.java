@@ -0,0 +1,207 @@
+package io.github.michael4d45;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Append-only journal of port table changes, written on a dedicated I/O thread.
+ *
+ * <p>Every assignment / release is queued from inside the {@link NetworkCorePortState} lock, so the
+ * queue order is the mutation order. After {@link #COMPACT_AFTER_RECORDS} records the current
+ * table is snapshotted (still under the lock) and the I/O thread rewrites the snapshot file and
+ * truncates the journal. Journal records are absolute ("port p now belongs to X" / "port p is
+ * free"), so replaying a journal on top of a snapshot that already contains some of its records
+ * yields the same table; a crash between the snapshot rename and the truncation is therefore
+ * harmless, and a torn final record is simply ignored on replay.
+ */
+final class PortStateJournal implements NetworkCorePortState.ChangeListener {
+
+  private static final int COMPACT_AFTER_RECORDS = 1024;
+  private static final byte OP_ASSIGNED = 1;
+  private static final byte OP_RELEASED = 2;
+
+  private final NetworkCorePortState state;
+  private final Path snapshotPath;
+  private final Path journalPath;
+  private final ExecutorService io =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "NetworkCore-PortIO");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  // Only touched on the I/O thread
+  private DataOutputStream out;
+
+  // Guarded by the state lock (listener callbacks run while it is held)
+  private int recordsSinceCompaction = 0;
+
+  PortStateJournal(NetworkCorePortState state, Path snapshotPath, Path journalPath) {
+    this.state = state;
+    this.snapshotPath = snapshotPath;
+    this.journalPath = journalPath;
+  }
+
+  /**
+   * Applies the records in {@code journalPath} to {@code state}.
+   *
+   * @return number of records replayed
+   */
+  static int replay(Path journalPath, NetworkCorePortState state) {
+    if (!Files.exists(journalPath)) {
+      return 0;
+    }
+    int replayed = 0;
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(journalPath)))) {
+      while (true) {
+        byte op = in.readByte();
+        int port = in.readUnsignedShort();
+        if (op == OP_ASSIGNED) {
+          RegistryKey<World> dimension =
+              RegistryKey.of(RegistryKeys.WORLD, Identifier.of(in.readUTF()));
+          BlockPos pos = BlockPos.fromLong(in.readLong());
+          state.applyAssigned(port, new NetworkCorePortState.PortAllocation(pos, dimension));
+        } else if (op == OP_RELEASED) {
+          state.applyReleased(port);
+        } else {
+          NetworkCore.LOGGER.warn("Unknown port journal record {}, ignoring the rest", op);
+          break;
+        }
+        replayed++;
+      }
+    } catch (EOFException e) {
+      // End of journal (possibly a torn final record from a crash)
+    } catch (IOException | RuntimeException e) {
+      NetworkCore.LOGGER.error("Failed to replay network core port journal", e);
+    }
+    return replayed;
+  }
+
+  /**
+   * Starts journaling changes. With {@code compact}, any replayed records are first folded into a
+   * fresh snapshot; without it the journal is kept and appended to until the next compaction.
+   */
+  void start(boolean compact) {
+    synchronized (state) {
+      state.setChangeListener(this);
+      if (compact) {
+        scheduleCompaction();
+      }
+    }
+  }
+
+  @Override
+  public void onAssigned(int port, NetworkCorePortState.PortAllocation allocation) {
+    String dimension = allocation.dimension.getValue().toString();
+    long pos = allocation.pos.asLong();
+    append(
+        stream -> {
+          stream.writeByte(OP_ASSIGNED);
+          stream.writeShort(port);
+          stream.writeUTF(dimension);
+          stream.writeLong(pos);
+        });
+  }
+
+  @Override
+  public void onReleased(int port) {
+    append(
+        stream -> {
+          stream.writeByte(OP_RELEASED);
+          stream.writeShort(port);
+        });
+  }
+
+  /** Writes a snapshot now and waits for it, then stops the I/O thread. */
+  void close() {
+    synchronized (state) {
+      state.setChangeListener(null);
+      scheduleCompaction();
+    }
+    io.execute(this::closeStream);
+    io.shutdown();
+    try {
+      if (!io.awaitTermination(30, TimeUnit.SECONDS)) {
+        NetworkCore.LOGGER.error("Timed out waiting for network core port state to be written");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Caller holds the state lock.
+  private void append(JournalEntry entry) {
+    io.execute(
+        () -> {
+          try {
+            if (out == null) {
+              Files.createDirectories(journalPath.getParent());
+              out =
+                  new DataOutputStream(
+                      new BufferedOutputStream(
+                          Files.newOutputStream(
+                              journalPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            }
+            entry.write(out);
+            out.flush();
+          } catch (IOException e) {
+            NetworkCore.LOGGER.error("Failed to append to network core port journal", e);
+          }
+        });
+    if (++recordsSinceCompaction >= COMPACT_AFTER_RECORDS) {
+      scheduleCompaction();
+    }
+  }
+
+  // Caller holds the state lock, so the snapshot matches the journal position it is queued at.
+  private void scheduleCompaction() {
+    recordsSinceCompaction = 0;
+    NetworkCorePortState.Snapshot snapshot = state.snapshot();
+    io.execute(() -> compact(snapshot));
+  }
+
+  private void compact(NetworkCorePortState.Snapshot snapshot) {
+    try {
+      PortStateFile.write(snapshot, snapshotPath);
+      closeStream();
+      Files.deleteIfExists(journalPath);
+      NetworkCore.LOGGER.debug("Compacted {} network core port allocation(s)", snapshot.size());
+    } catch (IOException e) {
+      NetworkCore.LOGGER.error("Failed to write network core port snapshot", e);
+    }
+  }
+
+  private void closeStream() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        NetworkCore.LOGGER.error("Failed to close network core port journal", e);
+      }
+      out = null;
+    }
+  }
+
+  @FunctionalInterface
+  private interface JournalEntry {
+    void write(DataOutputStream stream) throws IOException;
+  }
+}
@@ -2,7 +2,10 @@ package io.github.michael4d45;
 
 import java.util.Queue;
 
-/** Rx emitter from Frame to nibble stream (pure-functional). */
+/**
+ * Rx emitter from Frame to nibble stream. {@link #process} is the pure-functional reference;
+ * {@link Emitter} is the in-place variant used by the runtime.
+ */
 public class RxEmitterStateMachine {
   public enum State {
     IDLE,
@@ -55,4 +58,67 @@ public class RxEmitterStateMachine {
     }
     return new Result(currentState, currentFrame, currentSymbols, 0, currentPosition);
   }
+
+  /**
+   * Streaming egress emitter. Mirrors {@link #process} tick for tick, but builds the symbol stream
+   * once per frame and then only advances a primitive cursor, so emitting a symbol is O(1) and
+   * allocation-free.
+   */
+  public static final class Emitter {
+
+    private State state = State.IDLE;
+    private Frame currentFrame;
+    private PackedNibbles symbols;
+    private int position = 0;
+
+    public State getState() {
+      return state;
+    }
+
+    public Frame getCurrentFrame() {
+      return currentFrame;
+    }
+
+    public int getPosition() {
+      return position;
+    }
+
+    /** Length of the symbol stream being emitted, or 0 when idle. */
+    public int getSymbolCount() {
+      return symbols == null ? 0 : symbols.length();
+    }
+
+    public void reset() {
+      state = State.IDLE;
+      currentFrame = null;
+      symbols = null;
+      position = 0;
+    }
+
+    /**
+     * Advances the emitter by one tick, pulling the next frame from {@code rxRing} when idle.
+     *
+     * @return the symbol to drive onto the receive face this tick (0 when idle)
+     */
+    public int advance(RxQueue rxRing) {
+      switch (state) {
+        case IDLE -> {
+          currentFrame = rxRing.poll();
+          if (currentFrame != null) {
+            symbols = currentFrame.buildPackedSymbols();
+            state = State.OUTPUTTING;
+            position = 1;
+            return symbols.get(0);
+          }
+        }
+        case OUTPUTTING -> {
+          if (symbols != null && position < symbols.length()) {
+            return symbols.get(position++);
+          }
+          reset();
+        }
+      }
+      return 0;
+    }
+  }
 }
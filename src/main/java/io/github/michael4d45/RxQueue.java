@@ -0,0 +1,107 @@
+package io.github.michael4d45;
+
+import java.util.Arrays;
+
+/**
+ * Frames waiting for a core's receive face, in two array-backed rings so queuing allocates nothing.
+ *
+ * <p>Control frames (Data Control, or IPv4 carrying Data Control) go in a small lane that is
+ * always drained first. A STATUS_REPLY, ECHO_REPLY or error notice therefore waits at most for the
+ * frame already being emitted, not behind a full queue of data frames. Each lane refuses frames
+ * when it is full without affecting the other. Not thread-safe: the owning core's runtime uses it
+ * from the server thread, or from one worker at a time during a parallel tick phase.
+ */
+final class RxQueue {
+
+  /** Control lane size; replies are short and at most one is produced per request. */
+  static final int CONTROL_CAPACITY = 8;
+
+  private final Lane data;
+  private final Lane control = new Lane(CONTROL_CAPACITY);
+
+  /** {@code capacity} bounds the data lane. */
+  RxQueue(int capacity) {
+    this.data = new Lane(capacity);
+  }
+
+  static boolean isControl(Frame frame) {
+    return frame instanceof DataControlFrame
+        || (frame instanceof IPv4Frame ipv4
+            && ipv4.getEncapsulatedFrame() instanceof DataControlFrame);
+  }
+
+  /** Returns false if {@code frame}'s lane is full. */
+  boolean offer(Frame frame) {
+    return (isControl(frame) ? control : data).offer(frame);
+  }
+
+  /** Next frame to emit, control lane first; null when empty. */
+  Frame poll() {
+    Frame frame = control.poll();
+    return frame != null ? frame : data.poll();
+  }
+
+  boolean isEmpty() {
+    return control.size == 0 && data.size == 0;
+  }
+
+  int size() {
+    return control.size + data.size;
+  }
+
+  /** Free slots in the data lane. */
+  int dataCredit() {
+    return data.slots.length - data.size;
+  }
+
+  /** Capacity of the data lane. */
+  int capacity() {
+    return data.slots.length;
+  }
+
+  void clear() {
+    data.clear();
+    control.clear();
+  }
+
+  private static final class Lane {
+    final Frame[] slots;
+    int head = 0;
+    int size = 0;
+
+    Lane(int capacity) {
+      this.slots = new Frame[capacity];
+    }
+
+    boolean isFull() {
+      return size == slots.length;
+    }
+
+    boolean offer(Frame frame) {
+      if (isFull()) {
+        return false;
+      }
+      int tail = head + size;
+      slots[tail < slots.length ? tail : tail - slots.length] = frame;
+      size++;
+      return true;
+    }
+
+    Frame poll() {
+      if (size == 0) {
+        return null;
+      }
+      Frame frame = slots[head];
+      slots[head] = null;
+      head = head + 1 == slots.length ? 0 : head + 1;
+      size--;
+      return frame;
+    }
+
+    void clear() {
+      Arrays.fill(slots, null);
+      head = 0;
+      size = 0;
+    }
+  }
+}
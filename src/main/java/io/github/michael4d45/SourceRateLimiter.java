@@ -0,0 +1,81 @@
+package io.github.michael4d45;
+
+import java.net.InetAddress;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-source token bucket, refilled at {@code perSecond} tokens per second and holding at most one
+ * second's worth.
+ *
+ * <p>Each bucket is a single "theoretical arrival time" (the GCRA form of a token bucket): taking a
+ * token pushes it forward by one interval, and a token is available while it is less than the burst
+ * window ahead of now. That makes {@link #tryAcquire} one array read and one CAS, cheap enough to
+ * run on every received datagram before it is decoded. Sources are keyed by address only, so a
+ * peer cannot reset its budget by changing ports.
+ *
+ * <p>Buckets live in a fixed table indexed by a salted hash of the address, so a new source costs
+ * nothing extra. Each slot also holds a 16-bit tag from a second hash; a source whose tag does not
+ * match takes the slot over with a full bucket rather than spending the previous owner's budget.
+ * Sources that share a slot therefore never throttle each other, and the salt is random per
+ * limiter, so a sender cannot pick addresses that land on someone else's slot.
+ */
+final class SourceRateLimiter {
+
+  private static final long MICROS_PER_SECOND = 1_000_000L;
+  // 64 KiB of buckets; a power of two so the hash can be reduced with a shift
+  private static final int TABLE_BITS = 13;
+  // Slot layout: tag in the top 16 bits, arrival time in microseconds (about 8.9 years) below
+  private static final int TAG_SHIFT = 48;
+  private static final long ARRIVAL_MASK = (1L << TAG_SHIFT) - 1;
+
+  private final long intervalMicros;
+  private final long burstMicros;
+  // Arrival times are relative to origin, so a zero slot is an unowned, full bucket
+  private final long origin = System.nanoTime();
+  private final AtomicLongArray buckets = new AtomicLongArray(1 << TABLE_BITS);
+  private final int salt = ThreadLocalRandom.current().nextInt();
+  private final AtomicLong denied = new AtomicLong();
+
+  /** {@code perSecond} of 0 disables the limit. */
+  SourceRateLimiter(int perSecond) {
+    this.intervalMicros = perSecond > 0 ? Math.max(1, MICROS_PER_SECOND / perSecond) : 0;
+    this.burstMicros = MICROS_PER_SECOND - intervalMicros;
+  }
+
+  /** Takes a token for {@code source}; returns false (and counts a denial) if none is left. */
+  boolean tryAcquire(InetAddress source) {
+    if (intervalMicros == 0) {
+      return true;
+    }
+    int hash = source.hashCode() ^ salt;
+    int slot = (hash * 0x9E3779B9) >>> (Integer.SIZE - TABLE_BITS);
+    long tag = (hash * 0x85EBCA6B) >>> 16;
+    long now = (System.nanoTime() - origin) / 1_000;
+    while (true) {
+      long entry = buckets.get(slot);
+      // Another source's bucket is replaced by a full one for this source
+      long arrival = entry >>> TAG_SHIFT == tag ? entry & ARRIVAL_MASK : now;
+      long start = Math.max(arrival, now);
+      if (start - now > burstMicros) {
+        denied.incrementAndGet();
+        return false;
+      }
+      if (buckets.compareAndSet(slot, entry, tag << TAG_SHIFT | (start + intervalMicros))) {
+        return true;
+      }
+    }
+  }
+
+  /** Requests refused since startup. */
+  long denied() {
+    return denied.get();
+  }
+
+  void clear() {
+    for (int i = 0; i < buckets.length(); i++) {
+      buckets.set(i, 0);
+    }
+  }
+}
@@ -2,8 +2,18 @@ package io.github.michael4d45;
 
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class TxFramerStateMachine {
 
+  // The mod logger, looked up by name: reading NetworkCore.LOGGER would load NetworkCore and
+  // register its block, which keeps the framer from being used (or tested) on its own
+  private static final Logger LOGGER = LoggerFactory.getLogger(NetworkCore.MOD_ID);
+
+  /** Longest possible frame: SOF + TYPE + CODE + LEN_HI + LEN_LO + 255 args + EOF. */
+  public static final int MAX_FRAME_NIBBLES = 5 + 0xFF + 1;
+
   public enum State {
     IDLE,
     TYPE,
@@ -69,7 +79,7 @@ public class TxFramerStateMachine {
         int lenLo = newBuffer.get(4);
         int expLen = (lenHi << 4) | lenLo;
         if (expLen < 0 || expLen > 0xFF) {
-          NetworkCore.LOGGER.warn("Invalid payload length: {}", expLen);
+          LOGGER.warn("Invalid payload length: {}", expLen);
           return new Result(State.ERROR, newBuffer, null, true, 0);
         }
         // LEN now means total args for ALL frame types (no special Data frame handling)
@@ -84,13 +94,13 @@ public class TxFramerStateMachine {
         if (argsRead == expectedLength) {
           return new Result(State.EXPECT_EOF, newBuffer, null, false, expectedLength);
         } else if (argsRead > expectedLength) {
-          NetworkCore.LOGGER.warn("Received more argument nibbles than expected");
+          LOGGER.warn("Received more argument nibbles than expected");
           return new Result(State.ERROR, newBuffer, null, true, 0);
         }
       }
       case EXPECT_EOF -> {
         if (symbol != 0) {
-          NetworkCore.LOGGER.warn("Expected EOF nibble but received {}", symbol);
+          LOGGER.warn("Expected EOF nibble but received {}", symbol);
           return new Result(State.ERROR, newBuffer, null, true, 0);
         }
         newBuffer.add(0);
@@ -98,7 +108,7 @@ public class TxFramerStateMachine {
           committed = decodeFrame(newBuffer);
           return new Result(State.IDLE, new java.util.ArrayList<>(), committed, false, 0);
         } catch (IllegalArgumentException e) {
-          NetworkCore.LOGGER.warn("Failed to parse frame: {}", e.getMessage());
+          LOGGER.warn("Failed to parse frame: {}", e.getMessage());
           return new Result(State.ERROR, newBuffer, null, true, 0);
         }
       }
@@ -125,6 +135,10 @@ public class TxFramerStateMachine {
     }
     int[] args = new int[len];
     System.arraycopy(symbols, 5, args, 0, len);
+    return decodeFrame(type, code, PackedNibbles.of(args));
+  }
+
+  private static Frame decodeFrame(int type, int code, PackedNibbles args) {
     return switch (type) {
       case 0 -> DataFrame.from(code, args);
       case 1 -> DataControlFrame.from(code, args);
@@ -132,4 +146,144 @@ public class TxFramerStateMachine {
       default -> throw new IllegalArgumentException("Unknown frame type: " + type);
     };
   }
+
+  /**
+   * In-place ingress framer. Mirrors {@link #process} symbol for symbol, but keeps its state in
+   * fields and buffers nibbles in a fixed {@code byte[]} so that nothing is allocated per symbol;
+   * the only allocations happen when a frame is committed.
+   */
+  public static final class Framer {
+
+    private final byte[] buffer = new byte[MAX_FRAME_NIBBLES];
+    private int size = 0;
+    private State state = State.IDLE;
+    private int expectedLength = 0;
+    private boolean errorIncremented = false;
+
+    public State getState() {
+      return state;
+    }
+
+    public int getExpectedLength() {
+      return expectedLength;
+    }
+
+    /** Number of nibbles currently buffered (SOF included). */
+    public int size() {
+      return size;
+    }
+
+    /** Whether the most recent {@link #advance} call hit a framing error. */
+    public boolean errorIncremented() {
+      return errorIncremented;
+    }
+
+    public void reset() {
+      state = State.IDLE;
+      size = 0;
+      expectedLength = 0;
+      errorIncremented = false;
+    }
+
+    /**
+     * Feeds one symbol into the framer.
+     *
+     * @return the committed frame when this symbol completed one, otherwise {@code null}
+     */
+    public Frame advance(int symbol) {
+      errorIncremented = false;
+      switch (state) {
+        case IDLE -> {
+          if (symbol == 15) { // SOF
+            size = 0;
+            append(15);
+            state = State.TYPE;
+            expectedLength = 0;
+          }
+        }
+        case TYPE -> {
+          append(symbol & 0xF);
+          state = State.CODE;
+          expectedLength = 0;
+        }
+        case CODE -> {
+          append(symbol & 0xF);
+          state = State.LEN_HI;
+          expectedLength = 0;
+        }
+        case LEN_HI -> {
+          append(symbol & 0xF);
+          state = State.LEN_LO;
+          expectedLength = 0;
+        }
+        case LEN_LO -> {
+          append(symbol & 0xF);
+          int expLen = (buffer[3] << 4) | buffer[4];
+          // LEN is a byte built from two nibbles, so it is always within 0..0xFF
+          if (expLen == 0) {
+            state = State.EXPECT_EOF;
+            expectedLength = 0;
+          } else {
+            state = State.ARGS;
+            expectedLength = expLen;
+          }
+        }
+        case ARGS -> {
+          append(symbol & 0xF);
+          int argsRead = size - 5;
+          if (argsRead == expectedLength) {
+            state = State.EXPECT_EOF;
+          } else if (argsRead > expectedLength) {
+            LOGGER.warn("Received more argument nibbles than expected");
+            fail();
+          }
+        }
+        case EXPECT_EOF -> {
+          if (symbol != 0) {
+            LOGGER.warn("Expected EOF nibble but received {}", symbol);
+            fail();
+            return null;
+          }
+          append(0);
+          try {
+            Frame committed = decodeBuffer();
+            size = 0;
+            state = State.IDLE;
+            expectedLength = 0;
+            return committed;
+          } catch (IllegalArgumentException e) {
+            LOGGER.warn("Failed to parse frame: {}", e.getMessage());
+            fail();
+          }
+        }
+        case ERROR -> {
+          if (symbol == 0) {
+            size = 0;
+            state = State.IDLE;
+            expectedLength = 0;
+          }
+        }
+      }
+      return null;
+    }
+
+    private void append(int nibble) {
+      buffer[size++] = (byte) nibble;
+    }
+
+    private void fail() {
+      state = State.ERROR;
+      expectedLength = 0;
+      errorIncremented = true;
+    }
+
+    private Frame decodeBuffer() {
+      int len = (buffer[3] << 4) | buffer[4];
+      if (len != size - 6) {
+        throw new IllegalArgumentException(
+            "Length mismatch: expected " + len + ", got " + (size - 6));
+      }
+      return decodeFrame(buffer[1], buffer[2], PackedNibbles.copyOfUnpacked(buffer, 5, len));
+    }
+  }
 }
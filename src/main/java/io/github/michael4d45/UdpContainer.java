@@ -0,0 +1,110 @@
+package io.github.michael4d45;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format for carrying several frames in one UDP datagram, plus the HELLO handshake used to
+ * find out whether a peer understands it.
+ *
+ * <pre>
+ *   byte 0   0xFC   magic (nibbles SOF=0xF, TYPE=0xC; no frame type uses 0xC)
+ *   byte 1   0x01   version
+ *   byte 2   kind   0 = BATCH, 1 = HELLO, 2 = HELLO_ACK
+ *   BATCH only:
+ *   byte 3   count  number of frames (1-255)
+ *   count x  { u16 nibble length N (big-endian), ceil(N / 2) packed bytes }
+ * </pre>
+ *
+ * A legacy peer sees a container as a frame of unsupported type 0xC and answers NETWORK_ERROR,
+ * which is how a HELLO probe tells it apart from a peer that answers HELLO_ACK.
+ */
+final class UdpContainer {
+
+  static final byte MAGIC = (byte) 0xFC;
+  static final byte VERSION = 1;
+  static final byte KIND_BATCH = 0;
+  static final byte KIND_HELLO = 1;
+  static final byte KIND_HELLO_ACK = 2;
+
+  static final int HEADER_BYTES = 4;
+  static final int ENTRY_HEADER_BYTES = 2;
+  static final int MAX_FRAMES = 255;
+
+  private UdpContainer() {
+    // Utility class: prevent instantiation
+  }
+
+  static boolean isContainer(ByteBuffer data) {
+    return data.remaining() >= 3 && data.get(data.position()) == MAGIC;
+  }
+
+  static byte[] control(byte kind) {
+    return new byte[] {MAGIC, VERSION, kind};
+  }
+
+  /** Bytes {@code frame} adds to a batch. */
+  static int entrySize(PackedNibbles frame) {
+    return ENTRY_HEADER_BYTES + (frame.length() + 1) / 2;
+  }
+
+  /** Packs {@code frames} into one BATCH datagram; the caller keeps it within MTU. */
+  static byte[] encodeBatch(List<PackedNibbles> frames) {
+    int size = HEADER_BYTES;
+    for (PackedNibbles frame : frames) {
+      size += entrySize(frame);
+    }
+    byte[] out = new byte[size];
+    out[0] = MAGIC;
+    out[1] = VERSION;
+    out[2] = KIND_BATCH;
+    out[3] = (byte) frames.size();
+    int pos = HEADER_BYTES;
+    for (PackedNibbles frame : frames) {
+      int length = frame.length();
+      out[pos++] = (byte) (length >> 8);
+      out[pos++] = (byte) length;
+      byte[] packed = frame.packedBytes();
+      System.arraycopy(packed, 0, out, pos, packed.length);
+      pos += packed.length;
+    }
+    return out;
+  }
+
+  /**
+   * Splits a BATCH datagram into one buffer per frame; each is a view over {@code data} holding
+   * exactly that frame's packed bytes.
+   *
+   * @throws IllegalArgumentException if the container is malformed
+   */
+  static List<ByteBuffer> split(ByteBuffer data) {
+    int start = data.position();
+    int end = data.limit();
+    if (end - start < HEADER_BYTES
+        || data.get(start + 1) != VERSION
+        || data.get(start + 2) != KIND_BATCH) {
+      throw new IllegalArgumentException("Not a version " + VERSION + " batch container");
+    }
+    int count = data.get(start + 3) & 0xFF;
+    List<ByteBuffer> frames = new ArrayList<>(count);
+    int pos = start + HEADER_BYTES;
+    for (int i = 0; i < count; i++) {
+      if (pos + ENTRY_HEADER_BYTES > end) {
+        throw new IllegalArgumentException("Batch truncated at frame " + i);
+      }
+      int length = (data.get(pos) & 0xFF) << 8 | (data.get(pos + 1) & 0xFF);
+      pos += ENTRY_HEADER_BYTES;
+      int bytes = (length + 1) / 2;
+      if (pos + bytes > end) {
+        throw new IllegalArgumentException("Batch truncated at frame " + i);
+      }
+      frames.add(data.slice(pos, bytes));
+      pos += bytes;
+    }
+    if (pos != end) {
+      throw new IllegalArgumentException("Trailing bytes after batch");
+    }
+    return frames;
+  }
+}
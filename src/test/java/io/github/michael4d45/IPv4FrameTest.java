@@ -0,0 +1,142 @@
+package io.github.michael4d45;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/** Checks the direct UDP codec of {@link IPv4Frame} against the generic nibble path. */
+class IPv4FrameTest {
+
+  // LEN is one byte and the addressing plus inner header take 28 nibbles
+  private static final int MAX_INNER_ARGS = 0xFF - 28;
+
+  @Test
+  void encodeMatchesPackedSymbols() {
+    Random random = new Random(3);
+    for (int i = 0; i < 2_000; i++) {
+      IPv4Frame frame = randomFrame(random, random.nextInt(MAX_INNER_ARGS - 8 + 1));
+      PackedNibbles symbols = frame.buildPackedSymbols();
+      PackedNibbles encoded = frame.encode();
+      assertEquals(symbols, encoded, frame.toString());
+      assertArrayEquals(symbols.toByteArray(), encoded.toByteArray(), frame.toString());
+      assertEquals(frame.encodedLength(), encoded.toByteArray().length, frame.toString());
+    }
+  }
+
+  @Test
+  void decodeMatchesFrom() {
+    Random random = new Random(4);
+    for (int i = 0; i < 2_000; i++) {
+      IPv4Frame frame = randomFrame(random, random.nextInt(MAX_INNER_ARGS - 8 + 1));
+      assertDecodesLikeFrom(frame);
+    }
+  }
+
+  @Test
+  void oddAndEvenInnerLengthsRoundTrip() {
+    Random random = new Random(5);
+    for (int payload = 0; payload <= MAX_INNER_ARGS - 8; payload++) {
+      IPv4Frame data = randomFrame(random, payload);
+      assertEquals(data.buildPackedSymbols(), data.encode());
+      assertDecodesLikeFrom(data);
+    }
+    for (int args = 0; args <= 5; args++) {
+      IPv4Frame control =
+          new IPv4Frame(
+              new byte[] {10, 0, 0, 1},
+              12345,
+              new byte[] {10, 0, 0, 2},
+              54321,
+              new DataControlFrame(0xB, randomNibbles(random, args)));
+      assertEquals(control.buildPackedSymbols(), control.encode());
+      assertDecodesLikeFrom(control);
+    }
+  }
+
+  @Test
+  void decodeReadsFromBufferPosition() {
+    IPv4Frame frame = randomFrame(new Random(6), 7);
+    byte[] encoded = frame.encode().toByteArray();
+    ByteBuffer buffer = ByteBuffer.allocate(encoded.length + 5);
+    buffer.position(3);
+    buffer.put(encoded).flip().position(3);
+    assertEquals(frame.buildPackedSymbols(), IPv4Frame.decode(buffer).buildPackedSymbols());
+  }
+
+  @Test
+  void truncatedInputIsRejected() {
+    Random random = new Random(7);
+    for (int payload : new int[] {0, 1, 2, 9, 100}) {
+      byte[] encoded = randomFrame(random, payload).encode().toByteArray();
+      for (int length = 0; length < encoded.length; length++) {
+        ByteBuffer prefix = ByteBuffer.wrap(Arrays.copyOf(encoded, length));
+        assertThrows(IllegalArgumentException.class, () -> IPv4Frame.decode(prefix));
+      }
+    }
+  }
+
+  @Test
+  void innerLengthPastFrameIsRejected() {
+    IPv4Frame frame = randomFrame(new Random(8), 4);
+    byte[] encoded = frame.encode().toByteArray();
+    // Inner LEN_HI is the low nibble of byte 15; raising it claims more payload than LEN allows
+    encoded[15] = (byte) (encoded[15] | 0x0F);
+    assertThrows(IllegalArgumentException.class, () -> IPv4Frame.decode(ByteBuffer.wrap(encoded)));
+  }
+
+  @Test
+  void missingEofIsRejected() {
+    for (int payload : new int[] {2, 3}) {
+      byte[] encoded = randomFrame(new Random(9), payload).encode().toByteArray();
+      encoded[encoded.length - 1] |= 0x11;
+      assertThrows(
+          IllegalArgumentException.class, () -> IPv4Frame.decode(ByteBuffer.wrap(encoded)));
+    }
+  }
+
+  private static void assertDecodesLikeFrom(IPv4Frame frame) {
+    PackedNibbles symbols = frame.buildPackedSymbols();
+    IPv4Frame decoded = IPv4Frame.decode(ByteBuffer.wrap(frame.encode().toByteArray()));
+    IPv4Frame parsed = IPv4Frame.from(frame.getCode(), symbols.slice(5, symbols.length() - 1));
+    String at = frame.toString();
+    assertEquals(parsed.getCode(), decoded.getCode(), at);
+    assertEquals(parsed.getDstIpBits(), decoded.getDstIpBits(), at);
+    assertEquals(parsed.getDstUdpPort(), decoded.getDstUdpPort(), at);
+    assertEquals(parsed.getSrcIpBits(), decoded.getSrcIpBits(), at);
+    assertEquals(parsed.getSrcUdpPort(), decoded.getSrcUdpPort(), at);
+    assertEquals(
+        parsed.getEncapsulatedFrame().getClass(), decoded.getEncapsulatedFrame().getClass(), at);
+    assertEquals(parsed.buildPackedSymbols(), decoded.buildPackedSymbols(), at);
+    assertEquals(symbols, decoded.buildPackedSymbols(), at);
+  }
+
+  /** An IPv4 frame around a Data frame with {@code payload} nibbles, or a control frame. */
+  private static IPv4Frame randomFrame(Random random, int payload) {
+    int[] nibbles = randomNibbles(random, payload);
+    Frame inner =
+        random.nextInt(4) == 0 && payload <= 15
+            ? new DataControlFrame(random.nextInt(16), nibbles)
+            : new DataFrame(random.nextInt(0x10000), random.nextInt(0x10000), nibbles);
+    return new IPv4Frame(
+        random.nextInt(8) == 0 ? 1 + random.nextInt(15) : 0,
+        random.nextInt(),
+        random.nextInt(0x10000),
+        random.nextInt(),
+        random.nextInt(0x10000),
+        inner);
+  }
+
+  private static int[] randomNibbles(Random random, int count) {
+    int[] nibbles = new int[count];
+    for (int i = 0; i < count; i++) {
+      nibbles[i] = random.nextInt(16);
+    }
+    return nibbles;
+  }
+}
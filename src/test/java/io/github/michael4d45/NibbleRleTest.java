@@ -0,0 +1,231 @@
+package io.github.michael4d45;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** Round trips of {@link NibbleRle} on its own and inside Data frames, plus its savings. */
+class NibbleRleTest {
+
+  private static final byte[] IP = {10, 0, 0, 1};
+
+  @AfterEach
+  void disable() {
+    NibbleRle.setEnabled(false);
+  }
+
+  @Test
+  void randomAndRunHeavyPayloadsRoundTrip() {
+    Random random = new Random(25);
+    for (int i = 0; i < 5_000; i++) {
+      int length = i % 3 == 0 ? random.nextInt(2_500) : random.nextInt(248);
+      assertRoundTrips(i % 2 == 0 ? runs(random, length) : literals(random, length));
+    }
+  }
+
+  @Test
+  void allRunsRoundTrip() {
+    for (int length = 1; length <= 1_000; length++) {
+      int[] payload = new int[length];
+      Arrays.fill(payload, 7);
+      PackedNibbles encoded = assertRoundTrips(payload);
+      // Full 130-nibble runs, then whatever is left as a shorter run or a literal
+      int tail = length % 130;
+      int expected = length / 130 * 3 + (tail == 0 ? 0 : tail < 3 ? tail + 1 : 3);
+      assertEquals(expected, encoded.length(), "length " + length);
+    }
+  }
+
+  @Test
+  void allLiteralsRoundTrip() {
+    for (int length = 1; length <= 1_000; length++) {
+      int[] payload = new int[length];
+      for (int i = 0; i < length; i++) {
+        payload[i] = i & 1;
+      }
+      PackedNibbles encoded = assertRoundTrips(payload);
+      // One control nibble per 8 literals
+      assertEquals(length + (length + 7) / 8, encoded.length(), "length " + length);
+    }
+  }
+
+  @Test
+  void maxLengthAndWorstCasePayloadsRoundTrip() {
+    Random random = new Random(26);
+    for (int length : new int[] {247, 248, 255, 1_000, 10_000}) {
+      assertRoundTrips(runs(random, length));
+      assertRoundTrips(literals(random, length));
+    }
+    // A 1-nibble literal before every 3-nibble run: 5 coded nibbles per 4
+    for (int length = 1; length <= 1_000; length++) {
+      int[] payload = new int[length];
+      for (int i = 0; i < length; i++) {
+        payload[i] = i % 4 == 0 ? 1 : 2;
+      }
+      PackedNibbles encoded = assertRoundTrips(payload);
+      assertTrue(encoded.length() <= length + length / 4 + 1, "length " + length);
+    }
+  }
+
+  @Test
+  void truncatedTokenIsRejected() {
+    // Literal announcing 4 nibbles with 2 present, a run without its value, a run without its count
+    for (int[] encoded : new int[][] {{3, 1, 2}, {8, 3}, {9}}) {
+      assertThrows(
+          IllegalArgumentException.class, () -> NibbleRle.decode(PackedNibbles.of(encoded)));
+    }
+    Random random = new Random(27);
+    for (int i = 0; i < 2_000; i++) {
+      PackedNibbles encoded =
+          NibbleRle.encode(PackedNibbles.of(runs(random, 1 + random.nextInt(200))));
+      PackedNibbles truncated = encoded.slice(0, encoded.length() - 1);
+      assertThrows(IllegalArgumentException.class, () -> NibbleRle.decode(truncated));
+    }
+  }
+
+  @Test
+  void dataFramesSurviveFramerAndUdp() {
+    NibbleRle.setEnabled(true);
+    Random random = new Random(28);
+    int coded = 0;
+    for (int i = 0; i < 5_000; i++) {
+      int length = i % 3 == 0 ? random.nextInt(2_500) : random.nextInt(248);
+      int[] payload = i % 2 == 0 ? runs(random, length) : literals(random, length);
+      DataFrame sent = new DataFrame(3, 4, payload);
+      if (sent.getPayloadArgs().length() > 0xFF) {
+        continue; // Too long even when coded
+      }
+      if (sent.getCode() == DataFrame.COMPRESSED_CODE) {
+        coded++;
+      }
+      assertSameData(sent, (DataFrame) throughFramer(sent));
+      if (sent.getPayloadArgs().length() <= 0xFF - 28) {
+        IPv4Frame wrapped = new IPv4Frame(IP, 7, IP, 8, sent);
+        IPv4Frame decoded = IPv4Frame.decode(ByteBuffer.wrap(wrapped.encode().toByteArray()));
+        assertSameData(sent, (DataFrame) decoded.getEncapsulatedFrame());
+        IPv4Frame framed = (IPv4Frame) throughFramer(wrapped);
+        assertSameData(sent, (DataFrame) framed.getEncapsulatedFrame());
+      }
+    }
+    assertTrue(coded > 1_000, "coded " + coded);
+  }
+
+  @Test
+  void longPayloadIsCodedEvenWhenDisabled() {
+    int[] payload = new int[400];
+    DataFrame sent = new DataFrame(1, 2, payload);
+    assertEquals(DataFrame.COMPRESSED_CODE, sent.getCode());
+    assertSameData(sent, (DataFrame) throughFramer(sent));
+    assertEquals(DataFrame.DEFAULT_CODE, new DataFrame(1, 2, new int[247]).getCode());
+  }
+
+  /**
+   * Redstone symbols per full 247-nibble frame, averaged over 1000 generated payloads; these are
+   * the figures in NETWORK_CORE_PROTOCOL.md §3.1.2.
+   */
+  @Test
+  void symbolCountsMatchProtocolTable() {
+    Random random = new Random(29);
+    assertEquals(261.0, averageSymbols(random, 0, false));
+    assertEquals(60.0, averageSymbols(random, 0, true), 1.0);
+    assertEquals(92.0, averageSymbols(random, 1, true), 1.0);
+    // Incompressible data goes out plain
+    assertEquals(261.0, averageSymbols(random, 2, true));
+  }
+
+  private static double averageSymbols(Random random, int kind, boolean enabled) {
+    NibbleRle.setEnabled(enabled);
+    long symbols = 0;
+    for (int i = 0; i < 1_000; i++) {
+      int[] payload =
+          switch (kind) {
+            case 0 -> screen(random, 247);
+            case 1 -> sensor(random, 247);
+            default -> literals(random, 247);
+          };
+      symbols += new DataFrame(1, 2, payload).buildSymbols().length;
+    }
+    return symbols / 1_000.0;
+  }
+
+  private static PackedNibbles assertRoundTrips(int[] payload) {
+    PackedNibbles raw = PackedNibbles.of(payload);
+    PackedNibbles encoded = NibbleRle.encode(raw);
+    assertEquals(raw, NibbleRle.decode(encoded), "payload of " + payload.length);
+    return encoded;
+  }
+
+  private static void assertSameData(DataFrame sent, DataFrame received) {
+    assertEquals(sent.getDstPort(), received.getDstPort());
+    assertEquals(sent.getSrcPort(), received.getSrcPort());
+    assertEquals(sent.getPayloadNibbles(), received.getPayloadNibbles());
+    assertEquals(sent.getCode(), received.getCode());
+    assertEquals(sent.getPayloadArgs(), received.getPayloadArgs());
+  }
+
+  private static Frame throughFramer(Frame frame) {
+    TxFramerStateMachine.Framer framer = new TxFramerStateMachine.Framer();
+    Frame committed = null;
+    for (int symbol : frame.buildSymbols()) {
+      Frame done = framer.advance(symbol);
+      if (done != null) {
+        committed = done;
+      }
+    }
+    return committed;
+  }
+
+  // Runs of 1-3 nibbles, with a quarter of them up to 300 long
+  private static int[] runs(Random random, int length) {
+    int[] payload = new int[length];
+    int i = 0;
+    while (i < length) {
+      int value = random.nextInt(16);
+      int run = random.nextInt(4) == 0 ? 1 + random.nextInt(300) : 1 + random.nextInt(3);
+      for (int j = 0; j < run && i < length; j++) {
+        payload[i++] = value;
+      }
+    }
+    return payload;
+  }
+
+  private static int[] literals(Random random, int length) {
+    int[] payload = new int[length];
+    for (int i = 0; i < length; i++) {
+      payload[i] = random.nextInt(16);
+    }
+    return payload;
+  }
+
+  // Blank screen with three 10-nibble sprites
+  private static int[] screen(Random random, int length) {
+    int[] payload = new int[length];
+    for (int sprite = 0; sprite < 3; sprite++) {
+      int at = random.nextInt(length - 12);
+      for (int j = 0; j < 10; j++) {
+        payload[at + j] = 1 + random.nextInt(15);
+      }
+    }
+    return payload;
+  }
+
+  // A reading that drifts by one about every sixth sample
+  private static int[] sensor(Random random, int length) {
+    int[] payload = new int[length];
+    int value = 8;
+    for (int i = 0; i < length; i++) {
+      if (random.nextInt(6) == 0) {
+        value = Math.max(0, Math.min(15, value + random.nextInt(3) - 1));
+      }
+      payload[i] = value;
+    }
+    return payload;
+  }
+}
@@ -0,0 +1,83 @@
+package io.github.michael4d45;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.michael4d45.NetworkCorePortState.PortAllocation;
+import io.github.michael4d45.NetworkCorePortState.Snapshot;
+
+class PortStateFileTest {
+
+  private static final RegistryKey<World> OVERWORLD =
+      RegistryKey.of(RegistryKeys.WORLD, Identifier.of("minecraft:overworld"));
+  private static final RegistryKey<World> NETHER =
+      RegistryKey.of(RegistryKeys.WORLD, Identifier.of("minecraft:the_nether"));
+
+  @TempDir Path dir;
+
+  @Test
+  void writeThenReadRoundTrips() throws IOException {
+    Snapshot sent = sampleSnapshot();
+    Path path = dir.resolve("ports.bin");
+    PortStateFile.write(sent, path);
+    Snapshot read = PortStateFile.read(path);
+    assertArrayEquals(sent.ports, read.ports);
+    assertArrayEquals(sent.allocations, read.allocations);
+  }
+
+  @Test
+  void readFileCanBeReplaced() throws IOException {
+    Path path = dir.resolve("ports.bin");
+    PortStateFile.write(sampleSnapshot(), path);
+    PortStateFile.read(path);
+    // The read must not hold the file open, or this fails on Windows
+    Snapshot empty = new Snapshot(new int[0], new PortAllocation[0]);
+    PortStateFile.write(empty, path);
+    assertEquals(0, PortStateFile.read(path).size());
+  }
+
+  @Test
+  void flippedByteFailsChecksum() throws IOException {
+    Path path = dir.resolve("ports.bin");
+    PortStateFile.write(sampleSnapshot(), path);
+    byte[] bytes = Files.readAllBytes(path);
+    bytes[bytes.length / 2] ^= 0x10;
+    Files.write(path, bytes);
+    assertThrows(IOException.class, () -> PortStateFile.read(path));
+  }
+
+  @Test
+  void truncatedFileIsRejected() throws IOException {
+    Path path = dir.resolve("ports.bin");
+    PortStateFile.write(sampleSnapshot(), path);
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+    assertThrows(IOException.class, () -> PortStateFile.read(path));
+  }
+
+  private static Snapshot sampleSnapshot() {
+    return new Snapshot(
+        new int[] {0, 7, 4242, 65535},
+        new PortAllocation[] {
+          new PortAllocation(new BlockPos(0, 64, 0), OVERWORLD),
+          new PortAllocation(new BlockPos(-1200, -60, 29_000_000), OVERWORLD),
+          new PortAllocation(new BlockPos(17, 120, -5), NETHER),
+          new PortAllocation(new BlockPos(29_999_999, 319, -29_999_999), NETHER)
+        });
+  }
+}
@@ -0,0 +1,120 @@
+package io.github.michael4d45;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/** Checks the allocation-free {@link TxFramerStateMachine.Framer} against the list-based path. */
+class TxFramerStateMachineTest {
+
+  @Test
+  void randomSymbolsMatchReference() {
+    Random random = new Random(1);
+    List<Integer> symbols = new ArrayList<>();
+    for (int i = 0; i < 200_000; i++) {
+      symbols.add(random.nextInt(16));
+    }
+    assertMatchesReference(symbols);
+  }
+
+  @Test
+  void wellFormedAndDamagedFramesMatchReference() {
+    Random random = new Random(2);
+    List<Integer> symbols = new ArrayList<>();
+    int frames = 0;
+    while (frames < 5_000) {
+      int[] frame = randomFrame(random).buildSymbols();
+      // Every fourth frame gets one nibble changed, dropped or doubled
+      int damage = random.nextInt(4) == 0 ? random.nextInt(3) : -1;
+      int at = random.nextInt(frame.length);
+      for (int i = 0; i < frame.length; i++) {
+        if (i == at && damage == 0) {
+          symbols.add(random.nextInt(16));
+        } else if (i != at || damage != 1) {
+          symbols.add(frame[i]);
+          if (i == at && damage == 2) {
+            symbols.add(frame[i]);
+          }
+        }
+      }
+      for (int idle = random.nextInt(3); idle > 0; idle--) {
+        symbols.add(0);
+      }
+      frames++;
+    }
+    int committed = assertMatchesReference(symbols);
+    // Most frames are intact, so most must come through
+    assertTrue(committed > frames / 2, "committed " + committed + " of " + frames);
+  }
+
+  @Test
+  void wellFormedFrameIsCommittedOnEof() {
+    Frame sent = new DataFrame(0x1234, 0x0042, new int[] {1, 2, 3});
+    TxFramerStateMachine.Framer framer = new TxFramerStateMachine.Framer();
+    int[] symbols = sent.buildSymbols();
+    for (int i = 0; i < symbols.length - 1; i++) {
+      assertNull(framer.advance(symbols[i]));
+    }
+    Frame committed = framer.advance(0);
+    assertNotNull(committed);
+    assertEquals(sent.buildPackedSymbols(), committed.buildPackedSymbols());
+    assertEquals(TxFramerStateMachine.State.IDLE, framer.getState());
+  }
+
+  /** Feeds {@code symbols} to both framers, comparing after every symbol; returns frames seen. */
+  private static int assertMatchesReference(List<Integer> symbols) {
+    TxFramerStateMachine.Framer framer = new TxFramerStateMachine.Framer();
+    TxFramerStateMachine.State state = TxFramerStateMachine.State.IDLE;
+    List<Integer> buffer = new ArrayList<>();
+    int expectedLength = 0;
+    int committed = 0;
+    for (int i = 0; i < symbols.size(); i++) {
+      int symbol = symbols.get(i);
+      TxFramerStateMachine.Result reference =
+          TxFramerStateMachine.process(state, buffer, expectedLength, symbol);
+      Frame frame = framer.advance(symbol);
+      String at = "symbol " + i;
+      assertEquals(reference.state, framer.getState(), at);
+      assertEquals(reference.expectedLength, framer.getExpectedLength(), at);
+      assertEquals(reference.errorIncremented, framer.errorIncremented(), at);
+      if (reference.committedFrame == null) {
+        assertNull(frame, at);
+      } else {
+        assertNotNull(frame, at);
+        assertEquals(reference.committedFrame.getClass(), frame.getClass(), at);
+        assertEquals(
+            reference.committedFrame.buildPackedSymbols(), frame.buildPackedSymbols(), at);
+        committed++;
+      }
+      state = reference.state;
+      buffer = reference.buffer;
+      expectedLength = reference.expectedLength;
+    }
+    return committed;
+  }
+
+  private static Frame randomFrame(Random random) {
+    int[] payload = new int[random.nextInt(40)];
+    for (int i = 0; i < payload.length; i++) {
+      payload[i] = random.nextInt(16);
+    }
+    return switch (random.nextInt(3)) {
+      case 0 -> new DataFrame(random.nextInt(0x10000), random.nextInt(0x10000), payload);
+      case 1 -> new DataControlFrame(random.nextInt(16), payload);
+      default ->
+          new IPv4Frame(
+              new byte[] {10, 0, 0, (byte) random.nextInt(256)},
+              random.nextInt(0x10000),
+              new byte[] {127, 0, 0, 1},
+              random.nextInt(0x10000),
+              new DataFrame(random.nextInt(0x10000), random.nextInt(0x10000), payload));
+    };
+  }
+}